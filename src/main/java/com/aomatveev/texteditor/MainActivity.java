@@ -1,13 +1,16 @@
 package com.aomatveev.texteditor;
 
 import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.model.PagedTextStore;
 import com.aomatveev.texteditor.syntax.AbstractSyntax;
 import com.aomatveev.texteditor.utilities.Utilities;
 import com.aomatveev.texteditor.syntax.NoneSyntax;
 import com.aomatveev.texteditor.syntax.JavaSyntax;
 import com.aomatveev.texteditor.syntax.JavascriptSyntax;
 import com.aomatveev.texteditor.utilities.Loader;
+import com.aomatveev.texteditor.utilities.Pager;
 import com.aomatveev.texteditor.utilities.Saver;
+import com.aomatveev.texteditor.utilities.Viewer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -27,6 +30,8 @@ public class MainActivity {
 
     private static JMenuItem newItem;
     private static JMenuItem openItem;
+    private static JMenuItem viewItem;
+    private static JMenuItem pageItem;
     private static JMenuItem saveItem;
     private static JMenuItem exitItem;
 
@@ -34,6 +39,8 @@ public class MainActivity {
     private static JMenuItem copyItem;
     private static JMenuItem cutItem;
     private static JMenuItem selectAllItem;
+    private static JMenuItem enableEditingItem;
+    private static JCheckBoxMenuItem lineWrapItem;
 
     private static JMenuItem noneItem;
     private static JMenuItem javaItem;
@@ -41,6 +48,8 @@ public class MainActivity {
 
     private static String noneSyntaxName = NoneSyntax.class.getName();
 
+    private static File viewedFile;
+
     private static void initTextPanel(JFrame frame) {
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new BorderLayout());
@@ -71,6 +80,8 @@ public class MainActivity {
 
         newItem = new JMenuItem("New");
         openItem = new JMenuItem("Open");
+        viewItem = new JMenuItem("View");
+        pageItem = new JMenuItem("Open Paged");
         saveItem = new JMenuItem("Save");
         exitItem = new JMenuItem("Exit");
 
@@ -80,6 +91,8 @@ public class MainActivity {
         copyItem = new JMenuItem("Copy");
         cutItem = new JMenuItem("Cut");
         selectAllItem = new JMenuItem("Select All");
+        enableEditingItem = new JMenuItem("Enable Editing");
+        lineWrapItem = new JCheckBoxMenuItem("Line Wrap");
 
         JMenu syntaxMenu = new JMenu("Syntax");
 
@@ -94,6 +107,8 @@ public class MainActivity {
 
         fileMenu.add(newItem);
         fileMenu.add(openItem);
+        fileMenu.add(viewItem);
+        fileMenu.add(pageItem);
         fileMenu.add(saveItem);
         fileMenu.add(exitItem);
 
@@ -101,6 +116,8 @@ public class MainActivity {
         editMenu.add(copyItem);
         editMenu.add(cutItem);
         editMenu.add(selectAllItem);
+        editMenu.add(enableEditingItem);
+        editMenu.add(lineWrapItem);
 
         syntaxMenu.add(noneItem);
         syntaxMenu.add(javaItem);
@@ -117,12 +134,16 @@ public class MainActivity {
         ActionListener listener = new SimpleActionListener();
         newItem.addActionListener(listener);
         openItem.addActionListener(listener);
+        viewItem.addActionListener(listener);
+        pageItem.addActionListener(listener);
         saveItem.addActionListener(listener);
         exitItem.addActionListener(listener);
         pasteItem.addActionListener(listener);
         copyItem.addActionListener(listener);
         cutItem.addActionListener(listener);
         selectAllItem.addActionListener(listener);
+        enableEditingItem.addActionListener(listener);
+        lineWrapItem.addActionListener(listener);
         noneItem.addActionListener(listener);
         javaItem.addActionListener(listener);
         javascriptItem.addActionListener(listener);
@@ -135,17 +156,69 @@ public class MainActivity {
     private static void openFile() {
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
-            newFile();
-            detectAndSetSyntax(fileChooser.getSelectedFile());
-            new Loader(fileChooser.getSelectedFile(), simpleTextComponent).execute();
+            loadFile(fileChooser.getSelectedFile());
+        }
+    }
+
+    private static void loadFile(File file) {
+        Loader loader = new Loader(file, simpleTextComponent, detectSyntax(file));
+        monitorProgress(loader, "Loading " + file.getName());
+        loader.execute();
+    }
+
+    private static void viewFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+            viewedFile = fileChooser.getSelectedFile();
+            Viewer viewer = new Viewer(viewedFile, simpleTextComponent, new NoneSyntax());
+            monitorProgress(viewer, "Indexing " + viewedFile.getName());
+            viewer.execute();
         }
     }
 
+    private static void pageFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            Pager pager = new Pager(file, simpleTextComponent, new NoneSyntax(), PagedTextStore.DEFAULT_MEMORY_BUDGET);
+            monitorProgress(pager, "Indexing " + file.getName());
+            pager.execute();
+        }
+    }
+
+    private static void enableEditing() {
+        if ((simpleTextComponent.isReadOnly()) && (viewedFile != null)) {
+            loadFile(viewedFile);
+        }
+    }
+
+    private static void lineWrap() {
+        simpleTextComponent.setLineWrap(lineWrapItem.isSelected());
+    }
+
+    private static void monitorProgress(SwingWorker<?, ?> worker, String message) {
+        ProgressMonitor monitor = new ProgressMonitor(simpleTextComponent, message, null, 0, 100);
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                monitor.setProgress((Integer) evt.getNewValue());
+                if (monitor.isCanceled()) {
+                    worker.cancel(true);
+                }
+            }
+            if (worker.isDone()) {
+                monitor.close();
+            }
+        });
+    }
+
     private static void saveFile() {
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
             detectAndSetSyntax(fileChooser.getSelectedFile());
-            new Saver(fileChooser.getSelectedFile(), simpleTextComponent.getText()).execute();
+            File file = fileChooser.getSelectedFile();
+            Saver saver = new Saver(file, simpleTextComponent.getSnapshot());
+            monitorProgress(saver, "Saving " + file.getName());
+            saver.execute();
         }
     }
 
@@ -203,16 +276,19 @@ public class MainActivity {
     }
 
     private static void detectAndSetSyntax(File file) {
+        simpleTextComponent.setSyntax(detectSyntax(file));
+    }
+
+    private static AbstractSyntax detectSyntax(File file) {
         String fileName = file.getName();
         int index = fileName.lastIndexOf('.');
-        if (index == -1) {
-            simpleTextComponent.setSyntax(new NoneSyntax());
-        }
-        String className = syntaxes.getOrDefault(fileName.substring(index + 1), noneSyntaxName);
+        String className = index == -1 ? noneSyntaxName
+                : syntaxes.getOrDefault(fileName.substring(index + 1), noneSyntaxName);
         try {
-            simpleTextComponent.setSyntax((AbstractSyntax) Class.forName(className).newInstance());
+            return (AbstractSyntax) Class.forName(className).newInstance();
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
             System.out.println(e.getMessage());
+            return new NoneSyntax();
         }
     }
 
@@ -238,6 +314,14 @@ public class MainActivity {
                 openFile();
                 return;
             }
+            if (choice == viewItem) {
+                viewFile();
+                return;
+            }
+            if (choice == pageItem) {
+                pageFile();
+                return;
+            }
             if (choice == exitItem) {
                 exitProgram();
                 return;
@@ -258,6 +342,14 @@ public class MainActivity {
                 selectAll();
                 return;
             }
+            if (choice == enableEditingItem) {
+                enableEditing();
+                return;
+            }
+            if (choice == lineWrapItem) {
+                lineWrap();
+                return;
+            }
             if (choice == noneItem) {
                 noneSyntax();
                 return;
@@ -0,0 +1,17 @@
+package com.aomatveev.texteditor.gui;
+
+import java.awt.font.TextLayout;
+
+public class LineSlice {
+    public final int start;
+    public final int end;
+    public final float x;
+    public final TextLayout layout;
+
+    public LineSlice(int start, int end, float x, TextLayout layout) {
+        this.start = start;
+        this.end = end;
+        this.x = x;
+        this.layout = layout;
+    }
+}
@@ -3,10 +3,15 @@ package com.aomatveev.texteditor.gui;
 import com.aomatveev.texteditor.handlers.SimpleKeyListener;
 import com.aomatveev.texteditor.handlers.SimpleMouseListener;
 import com.aomatveev.texteditor.handlers.SimpleMouseMotionListener;
+import com.aomatveev.texteditor.model.DocumentContent;
+import com.aomatveev.texteditor.model.MappedTextStore;
+import com.aomatveev.texteditor.model.PagedTextStore;
 import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.model.TextSnapshot;
 import com.aomatveev.texteditor.utilities.Utilities;
-import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.primitives.Range;
 import com.aomatveev.texteditor.syntax.AbstractSyntax;
+import com.aomatveev.texteditor.syntax.HighlightingService;
 import com.aomatveev.texteditor.syntax.NoneSyntax;
 
 import javax.swing.*;
@@ -15,16 +20,37 @@ import java.awt.*;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
-import java.text.AttributedString;
 
 public class SimpleTextComponent extends JPanel implements Scrollable {
 
+    private static final LineSlice DEFAULT_SLICE = new LineSlice(0, 0, 0, Utilities.defaultTextLayout);
+    private static final int REFLOW_LINES = 2048;
+
     private SimpleDocument document;
+    private SyntaxHighlighter highlighter;
     private int lineSpacing;
     private Dimension preferredScrollableViewportSize;
+    private int paintedLinesSize;
+    private int paintedMaxLength;
+    private int paintedCaretLine;
+    private int paintedAnchorLine;
+    private int paintedBracketLine;
+    private int lastPaintedLines;
+    private long lastPaintedPixels;
+    private boolean lineWrap;
+    private int foundLine;
+    private Timer reflowTimer;
+    private int reflowWidth = -1;
+    private int reflowStart = -1;
+    private int reflowEnd;
+    private long reflowedVersion;
 
     public SimpleTextComponent() {
+        reflowTimer = new Timer(0, e -> reflowStep());
+        reflowTimer.setRepeats(false);
+        highlighter = new SyntaxHighlighter();
         document = new SimpleDocument(this);
+        document.setHighlightingService(new HighlightingService());
         setSyntax(new NoneSyntax());
         preferredScrollableViewportSize = new Dimension();
         initLineSpacing();
@@ -36,7 +62,9 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
     }
 
     public void newFile() {
+        highlighter.clear();
         document.newDocument();
+        reflowAll();
         updateView();
     }
 
@@ -44,14 +72,106 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
         document.append(text);
     }
 
+    public void load(DocumentContent content) {
+        load(content, document.getSyntax());
+    }
+
+    public void load(DocumentContent content, AbstractSyntax syntax) {
+        highlighter.clear();
+        document.load(content, syntax);
+        reflowAll();
+        revalidate();
+    }
+
+    public void view(MappedTextStore store) {
+        view(store, document.getSyntax());
+    }
+
+    public void view(MappedTextStore store, AbstractSyntax syntax) {
+        highlighter.clear();
+        document.view(store, syntax);
+        reflowAll();
+        revalidate();
+    }
+
+    public void page(PagedTextStore store) {
+        page(store, document.getSyntax());
+    }
+
+    public void page(PagedTextStore store, AbstractSyntax syntax) {
+        highlighter.clear();
+        document.page(store, syntax);
+        reflowAll();
+        revalidate();
+    }
+
+    public boolean isReadOnly() {
+        return document.isReadOnly();
+    }
+
     public void updateView() {
         repaint();
+        rememberPaintedState();
+    }
+
+    public void updateView(int startLine, int endLine) {
+        if ((startLine >= 0) && (isWrapping()) && (document.getVersion() != reflowedVersion)) {
+            reflowedVersion = document.getVersion();
+            if (reflowWidth != getWrapWidth()) {
+                reflowAll();
+            } else {
+                int end = Math.min(endLine, document.linesSize() - 1) + 1;
+                int syncEnd = Math.min(end, startLine + REFLOW_LINES);
+                if (reflow(startLine, syncEnd)) {
+                    endLine = Integer.MAX_VALUE;
+                    revalidate();
+                }
+                boolean shifted = (document.linesSize() != paintedLinesSize) && (!document.isPaged());
+                pendReflow(syncEnd, shifted ? document.linesSize() : end);
+            }
+        }
+        if (document.linesSize() != paintedLinesSize) {
+            endLine = Integer.MAX_VALUE;
+        }
+        if ((document.linesSize() != paintedLinesSize) || (document.getMaxLength() != paintedMaxLength)) {
+            revalidate();
+        }
+        repaintLines(startLine, endLine);
+        int caretLine = document.getCaretLineIndex();
+        repaintLines(paintedCaretLine, paintedCaretLine);
+        repaintLines(caretLine, caretLine);
+        repaintLines(paintedBracketLine, paintedBracketLine);
+        repaintLines(document.getMatchingBracketLine(), document.getMatchingBracketLine());
+        int anchorLine = document.getSelectionAnchorLine();
+        if ((anchorLine != -1) && (anchorLine == paintedAnchorLine)) {
+            repaintLines(Math.min(caretLine, paintedCaretLine), Math.max(caretLine, paintedCaretLine));
+        } else {
+            if (paintedAnchorLine != -1) {
+                repaintLines(Math.min(paintedAnchorLine, paintedCaretLine), Math.max(paintedAnchorLine, paintedCaretLine));
+            }
+            if (anchorLine != -1) {
+                repaintLines(Math.min(anchorLine, caretLine), Math.max(anchorLine, caretLine));
+            }
+        }
+        rememberPaintedState();
+    }
+
+    public int getLastPaintedLines() {
+        return lastPaintedLines;
+    }
+
+    public long getLastPaintedPixels() {
+        return lastPaintedPixels;
     }
 
     public String getText() {
         return document.toString();
     }
 
+    public TextSnapshot getSnapshot() {
+        return document.getSnapshot();
+    }
+
     public int getLineSpacing() {
         return lineSpacing;
     }
@@ -60,11 +180,37 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
         return document.linesSize();
     }
 
-    public TextLayout getTextLayout(int lineIndex) {
-        if (lineIndex >= document.linesSize()) {
-            return Utilities.defaultTextLayout;
+    public LineSlice getSliceAtRow(int row) {
+        int wrapWidth = getWrapWidth();
+        int lineIndex = row;
+        int lineRow = 0;
+        if (wrapWidth != -1) {
+            lineIndex = document.findLineAtRow(row);
+            lineRow = row - document.getFoundRow();
+            if (lineIndex >= document.linesSize()) {
+                lineIndex += lineRow;
+                lineRow = 0;
+            }
         }
-        return SyntaxHighlighter.getTextLayout(lineIndex, document);
+        foundLine = lineIndex;
+        Rectangle visibleRect = getVisibleRect();
+        int x = visibleRect.x - ((EmptyBorder) getBorder()).getBorderInsets().left;
+        return getRowSlice(lineIndex, lineRow, x, visibleRect.width, wrapWidth);
+    }
+
+    public int getFoundLine() {
+        return foundLine;
+    }
+
+    public boolean isLineWrap() {
+        return lineWrap;
+    }
+
+    public void setLineWrap(boolean lineWrap) {
+        this.lineWrap = lineWrap;
+        reflowAll();
+        revalidate();
+        repaint();
     }
 
     public void paste() {
@@ -85,65 +231,198 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
     }
 
     public void setSyntax(AbstractSyntax syntax) {
+        highlighter.clear();
         document.setSyntax(syntax);
         updateView();
     }
 
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        if (highlighter != null) {
+            highlighter.clear();
+            reflowAll();
+        }
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        if ((document != null) && (isWrapping()) && (getWrapWidth() != reflowWidth)) {
+            reflowAll();
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
 
-        g.clearRect(0, 0, getWidth(), getHeight());
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = getVisibleRect();
+        }
+        g.clearRect(clip.x, clip.y, clip.width, clip.height);
         Graphics2D graphics2D = (Graphics2D) g;
         Rectangle visibleRect = getVisibleRect();
-        TextLayout caretLayout = null;
-        Pair<Integer, Integer> bound = getDrawBound(visibleRect);
-        Point2D.Double origin = computeLayoutOrigin(bound.getFirst());
-        for (int i = bound.getFirst(); i < bound.getSecond(); ++i) {
-            if (needDraw(visibleRect, origin)) {
-                if (document.isSelected()) {
-                    TextLayout layout = getTextLayout(i);
-                    Pair<Integer, Integer> bounds = document.getSelectedBounds(i);
-                    if (bounds != null) {
-                        Shape base = layout.getLogicalHighlightShape(bounds.getFirst(), bounds.getSecond());
-                        AffineTransform at = AffineTransform.getTranslateInstance(origin.getX(), origin.getY());
-                        Shape highlight = at.createTransformedShape(base);
-                        graphics2D.setColor(Utilities.SELECT_COLOR);
-                        graphics2D.fill(highlight);
-                    }
-                    graphics2D.setColor(Utilities.TEXT_COLOR);
-                    layout.draw(graphics2D, (int) origin.getX(), (int) origin.getY());
-                } else {
-                    AttributedString drawString = SyntaxHighlighter.getAttributedString(i, document);
-                    graphics2D.setColor(Utilities.TEXT_COLOR);
-                    graphics2D.drawString(drawString.getIterator(), (int) origin.getX(), (int) origin.getY());
+        int wrapWidth = getWrapWidth();
+        LineSlice caretSlice = null;
+        int caretY = 0;
+        long bound = getDrawBound(clip);
+        int firstRow = wrapWidth == -1 ? Range.start(bound) : document.getLineRow(Range.start(bound));
+        Point2D.Double origin = computeLayoutOrigin(firstRow);
+        int visibleX = visibleRect.x - (int) origin.getX();
+        lastPaintedLines = 0;
+        lastPaintedPixels = (long) clip.width * clip.height;
+        for (int i = Range.start(bound); i < Range.end(bound); ++i) {
+            int rows = 1;
+            int wrappedRows = 1;
+            if ((wrapWidth != -1) && (i < document.linesSize())) {
+                rows = document.getLineRows(i);
+                wrappedRows = highlighter.getRowsSize(i, document, wrapWidth);
+                if (wrappedRows != rows) {
+                    pendReflow(i, i + 1);
                 }
-                
-                if (i == document.getCaretLineIndex()) {
-                    caretLayout = getTextLayout(i);
+            }
+            int lastRow = Math.min(rows, wrappedRows) - 1;
+            boolean painted = false;
+            for (int row = 0; row < rows; ++row) {
+                if ((row <= lastRow) && (needDraw(clip, origin))) {
+                    painted = true;
+                    LineSlice slice = getRowSlice(i, row, visibleX, visibleRect.width, wrapWidth);
+                    paintSlice(graphics2D, i, slice, (int) (origin.getX() + slice.x), (int) origin.getY());
+                    int caret = document.getCaretCharIndex();
+                    if ((i == document.getCaretLineIndex()) && (caret >= slice.start)
+                            && ((caret < slice.end) || (row == lastRow))) {
+                        caretSlice = slice;
+                        caretY = (int) origin.getY();
+                    }
                 }
+                origin.y += lineSpacing;
+            }
+            if (painted) {
+                lastPaintedLines += 1;
             }
-            origin.y += lineSpacing;
         }
-        if (caretLayout != null) {
-            origin = computeCaretOrigin();
-            graphics2D.translate(origin.getX(), origin.getY());
+        int caretIndex = caretSlice == null ? -1 : document.getCaretCharIndex() - caretSlice.start;
+        if ((caretIndex >= 0) && (caretIndex <= caretSlice.layout.getCharacterCount())) {
+            graphics2D.translate((int) (origin.getX() + caretSlice.x), caretY);
             if (document.isInsertMode()) {
                 graphics2D.setColor(Utilities.INSERT_MODE_CARET);
             } else {
                 graphics2D.setColor(Utilities.TEXT_COLOR);
             }
-            Shape[] carets = caretLayout.getCaretShapes(document.getCaretCharIndex());
+            Shape[] carets = caretSlice.layout.getCaretShapes(caretIndex);
             graphics2D.draw(carets[0]);
         }
     }
 
-    private Point2D.Double computeLayoutOrigin() {
-        Point2D.Double origin = new Point2D.Double();
+    private void paintSlice(Graphics2D graphics2D, int lineIndex, LineSlice slice, int x, int y) {
+        TextLayout layout = slice.layout;
+        if (document.isSelected()) {
+            long bounds = document.getSelectedBounds(lineIndex);
+            int start = Math.max(Range.start(bounds) - slice.start, 0);
+            int end = Math.min(Range.end(bounds) - slice.start, layout.getCharacterCount());
+            if ((bounds != Range.NONE) && (start <= end)) {
+                Shape base = layout.getLogicalHighlightShape(start, end);
+                AffineTransform at = AffineTransform.getTranslateInstance(x, y);
+                Shape highlight = at.createTransformedShape(base);
+                graphics2D.setColor(Utilities.SELECT_COLOR);
+                graphics2D.fill(highlight);
+            }
+        }
+        graphics2D.setColor(Utilities.TEXT_COLOR);
+        layout.draw(graphics2D, x, y);
+    }
 
-        origin.x = ((EmptyBorder) getBorder()).getBorderInsets().left;
-        origin.y = ((EmptyBorder) getBorder()).getBorderInsets().top;
+    private LineSlice getRowSlice(int lineIndex, int row, int x, int width, int wrapWidth) {
+        if (lineIndex >= document.linesSize()) {
+            return DEFAULT_SLICE;
+        }
+        if (wrapWidth == -1) {
+            return highlighter.getLineSlice(lineIndex, document, x, width);
+        }
+        return highlighter.getRowSlice(lineIndex, document, row, wrapWidth);
+    }
 
-        return origin;
+    boolean isReflowPending() {
+        return reflowStart != -1;
+    }
+
+    void scheduleReflow() {
+        reflowTimer.restart();
+    }
+
+    void reflowStep() {
+        if (reflowStart == -1) {
+            return;
+        }
+        if (reflowWidth != getWrapWidth()) {
+            reflowAll();
+            return;
+        }
+        int end = Math.min(reflowEnd, document.linesSize());
+        int stepEnd = Math.min(end, reflowStart + REFLOW_LINES);
+        boolean changed = reflow(reflowStart, stepEnd);
+        reflowStart = stepEnd < end ? stepEnd : -1;
+        if (changed) {
+            revalidate();
+            repaint();
+        }
+        if (reflowStart != -1) {
+            scheduleReflow();
+        }
+    }
+
+    private void reflowAll() {
+        reflowStart = -1;
+        reflowWidth = getWrapWidth();
+        if (reflowWidth == -1) {
+            reflowTimer.stop();
+            return;
+        }
+        reflowedVersion = document.getVersion();
+        Rectangle visibleRect = getVisibleRect();
+        int firstLine = document.findLineAtRow(visibleRect.y / lineSpacing);
+        reflow(firstLine, firstLine + visibleRect.height / lineSpacing + 2);
+        if (!document.isPaged()) {
+            pendReflow(0, document.linesSize());
+        }
+        revalidate();
+        repaint();
+    }
+
+    private boolean reflow(int startLine, int endLine) {
+        int rowsSize = document.getRowsSize();
+        endLine = Math.min(endLine, document.linesSize());
+        for (int i = startLine; i < endLine; ++i) {
+            document.setLineRows(i, highlighter.getRowsSize(i, document, reflowWidth));
+        }
+        return document.getRowsSize() != rowsSize;
+    }
+
+    private void pendReflow(int startLine, int endLine) {
+        if (startLine >= endLine) {
+            return;
+        }
+        if (reflowStart == -1) {
+            reflowStart = startLine;
+            reflowEnd = endLine;
+        } else {
+            reflowStart = Math.min(reflowStart, startLine);
+            reflowEnd = Math.max(reflowEnd, endLine);
+        }
+        scheduleReflow();
+    }
+
+    private int getWrapWidth() {
+        if (!isWrapping()) {
+            return -1;
+        }
+        Insets insets = ((EmptyBorder) getBorder()).getBorderInsets();
+        return Math.max(getWidth() - insets.left - insets.right, Utilities.CHARACTER_WIDTH);
+    }
+
+    private boolean isWrapping() {
+        return lineWrap && !document.isReadOnly();
     }
 
     private Point2D.Double computeLayoutOrigin(int y) {
@@ -156,10 +435,28 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
         return origin;
     }
 
-    private Point2D.Double computeCaretOrigin() {
-        Point2D.Double origin = computeLayoutOrigin();
-        origin.y += lineSpacing * document.getCaretLineIndex();
-        return origin;
+    private void repaintLines(int startLine, int endLine) {
+        if (startLine < 0) {
+            return;
+        }
+        if (isWrapping()) {
+            int linesSize = document.linesSize();
+            if (endLine != Integer.MAX_VALUE) {
+                endLine = document.getLineRow(Math.min(endLine + 1, linesSize)) - 1;
+            }
+            startLine = document.getLineRow(Math.min(startLine, linesSize));
+        }
+        int y = getInsets().top + (startLine - 1) * lineSpacing;
+        int height = endLine == Integer.MAX_VALUE ? getHeight() - y : (endLine - startLine + 2) * lineSpacing;
+        repaint(0, y, getWidth(), height);
+    }
+
+    private void rememberPaintedState() {
+        paintedLinesSize = document.linesSize();
+        paintedMaxLength = document.getMaxLength();
+        paintedCaretLine = document.getCaretLineIndex();
+        paintedAnchorLine = document.getSelectionAnchorLine();
+        paintedBracketLine = document.getMatchingBracketLine();
     }
 
     private void initLineSpacing() {
@@ -172,10 +469,14 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
                 getWidth(), lineSpacing));
     }
 
-    private Pair<Integer, Integer> getDrawBound(Rectangle visibleRect) {
+    private long getDrawBound(Rectangle visibleRect) {
         int start = (int) (visibleRect.getY() / lineSpacing);
         int finish = (int) (((visibleRect.getY() + visibleRect.getHeight()) / lineSpacing) + 1);
-        return new Pair<>(Math.max(start - 1, 0), Math.min(finish + 1, linesSize()));
+        if (isWrapping()) {
+            return Range.of(document.findLineAtRow(Math.max(start - 1, 0)),
+                    Math.min(document.findLineAtRow(finish + 1) + 1, linesSize()));
+        }
+        return Range.of(Math.max(start - 1, 0), Math.min(finish + 1, linesSize()));
     }
 
     // --- implements Scrollable ---------------------------------
@@ -210,7 +511,7 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
 
     @Override
     public boolean getScrollableTracksViewportWidth() {
-        return false;
+        return isWrapping();
     }
 
     @Override
@@ -220,7 +521,7 @@ public class SimpleTextComponent extends JPanel implements Scrollable {
 
     private Dimension computeDimension() {
         int top = ((EmptyBorder) getBorder()).getBorderInsets().top;
-        int height = top + (lineSpacing * document.linesSize());
+        int height = top + (lineSpacing * (isWrapping() ? document.getRowsSize() : document.linesSize()));
         int maxLen = document.getMaxLength();
 
         int left = ((EmptyBorder) getBorder()).getBorderInsets().left;
@@ -0,0 +1,85 @@
+package com.aomatveev.texteditor.gui;
+
+import com.aomatveev.texteditor.primitives.IntRangeList;
+
+import java.util.Arrays;
+
+class StyleRuns {
+    static final int PLAIN = -1;
+
+    private int[] runs;
+    private int size;
+
+    StyleRuns(int capacity) {
+        runs = new int[3 * Math.max(capacity, 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int start(int index) {
+        return runs[3 * index];
+    }
+
+    int length(int index) {
+        return runs[3 * index + 1];
+    }
+
+    int end(int index) {
+        return start(index) + length(index);
+    }
+
+    int style(int index) {
+        return runs[3 * index + 2];
+    }
+
+    void add(int start, int end, int style) {
+        if ((style == PLAIN) || (start >= end)) {
+            return;
+        }
+        if ((size > 0) && (style(size - 1) == style) && (end(size - 1) == start)) {
+            runs[3 * size - 2] += end - start;
+            return;
+        }
+        if (3 * size == runs.length) {
+            runs = Arrays.copyOf(runs, 2 * runs.length);
+        }
+        runs[3 * size] = start;
+        runs[3 * size + 1] = end - start;
+        runs[3 * size + 2] = style;
+        size += 1;
+    }
+
+    StyleRuns slice(int from, int to) {
+        StyleRuns result = new StyleRuns(4);
+        for (int i = 0; i < size; ++i) {
+            result.add(Math.max(start(i), from) - from, Math.min(end(i), to) - from, style(i));
+        }
+        return result;
+    }
+
+    StyleRuns overlay(IntRangeList ranges, int style, int keepStyle, int length) {
+        StyleRuns result = new StyleRuns(size + 2 * ranges.size());
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (position < length) {
+            boolean inRun = (i < size) && (start(i) <= position);
+            int baseStyle = inRun ? style(i) : PLAIN;
+            int baseEnd = inRun ? end(i) : (i < size ? start(i) : length);
+            boolean inRange = (j < ranges.size()) && (ranges.start(j) <= position);
+            int rangeEnd = inRange ? ranges.end(j) : (j < ranges.size() ? ranges.start(j) : length);
+            int end = Math.min(Math.min(baseEnd, rangeEnd), length);
+            result.add(position, end, (inRange && (baseStyle != keepStyle)) ? style : baseStyle);
+            position = end;
+            if (inRun && (position == baseEnd)) {
+                i += 1;
+            }
+            while ((j < ranges.size()) && (ranges.end(j) <= position)) {
+                j += 1;
+            }
+        }
+        return result;
+    }
+}
@@ -1,72 +1,353 @@
 package com.aomatveev.texteditor.gui;
 
+import com.aomatveev.texteditor.model.LineInfo;
 import com.aomatveev.texteditor.model.SimpleDocument;
-import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.primitives.IntRangeList;
+import com.aomatveev.texteditor.syntax.LineTokens;
 import com.aomatveev.texteditor.utilities.Utilities;
 
-
 import java.awt.*;
 import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
 import java.text.AttributedString;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class SyntaxHighlighter {
 
-    public static AttributedString getAttributedString(int lineIndex, SimpleDocument document) {
+    private static final int CACHE_SIZE = 1024;
+    private static final int BRACKET_STYLE = 4;
+    private static final int LONG_LINE = 4096;
+    private static final int SLICE_STEP = 256;
+    private static final Font FONT = new Font(Utilities.attributesMap);
+    private static final float ADVANCES[] = new float[Character.MAX_VALUE + 1];
+    private static final Color STYLES[] = {Utilities.IDENTIFIERS_COLOR, Utilities.KEYWORD_COLOR,
+            Utilities.LITERAL_COLOR, Utilities.COMMENT_COLOR, Utilities.BRACKET_COLOR};
+
+    private final Map<Object, StyledLine> cache;
+
+    static {
+        Arrays.fill(ADVANCES, Float.NaN);
+    }
+
+    public SyntaxHighlighter() {
+        cache = new LinkedHashMap<Object, StyledLine>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, StyledLine> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    public LineSlice getLineSlice(int lineIndex, SimpleDocument document, int x, int width) {
+        StyledLine line = getStyledLine(lineIndex, document);
+        if (line.offsets != null) {
+            return line.getSlice(lineIndex, document, x, width);
+        }
+        TextLayout layout = getTextLayout(line, lineIndex, document);
+        if (layout != line.layout) {
+            return new LineSlice(0, line.text.length(), 0, layout);
+        }
+        if (line.slice == null) {
+            line.slice = new LineSlice(0, line.text.length(), 0, layout);
+        }
+        return line.slice;
+    }
+
+    public int getRowsSize(int lineIndex, SimpleDocument document, int width) {
+        StyledLine line = getCachedStyledLine(lineIndex, document);
+        if (line != null) {
+            return line.getRowStarts(width).length;
+        }
+        return wrap(document.getLine(lineIndex).toString(), width).length;
+    }
+
+    public LineSlice getRowSlice(int lineIndex, SimpleDocument document, int row, int width) {
+        return getStyledLine(lineIndex, document).getRowSlice(lineIndex, document, row, width);
+    }
+
+    AttributedString getAttributedString(int lineIndex, SimpleDocument document) {
+        return getStyledLine(lineIndex, document).getColoredString(lineIndex, document);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int cachedLinesSize() {
+        return cache.size();
+    }
+
+    private StyledLine getStyledLine(int lineIndex, SimpleDocument document) {
+        if (document.isReadOnly()) {
+            StyledLine line = cache.get(lineIndex);
+            if (line == null) {
+                line = highlight(lineIndex, document);
+                cache.put(lineIndex, line);
+            }
+            return line;
+        }
+        if (!document.isLineAnalysed(lineIndex)) {
+            return highlight(lineIndex, document);
+        }
+        LineInfo info = document.getLineInfo(lineIndex);
+        StyledLine line = cache.get(info);
+        if ((line == null) || (line.version != info.version)) {
+            line = highlight(lineIndex, document);
+            line.version = info.version;
+            cache.put(info, line);
+        }
+        return line;
+    }
+
+    private StyledLine getCachedStyledLine(int lineIndex, SimpleDocument document) {
+        if (document.isReadOnly()) {
+            return cache.get(lineIndex);
+        }
+        if (!document.isLineAnalysed(lineIndex)) {
+            return null;
+        }
+        LineInfo info = document.getLineInfo(lineIndex);
+        StyledLine line = cache.get(info);
+        return (line != null) && (line.version == info.version) ? line : null;
+    }
+
+    private static TextLayout getTextLayout(StyledLine line, int lineIndex, SimpleDocument document) {
+        AttributedString coloredString = line.getColoredString(lineIndex, document);
+        if (coloredString != line.coloredString) {
+            return new TextLayout(coloredString.getIterator(), Utilities.DEFAULT_FRC);
+        }
+        if (line.layout == null) {
+            line.layout = new TextLayout(coloredString.getIterator(), Utilities.DEFAULT_FRC);
+        }
+        return line.layout;
+    }
+
+    private static StyledLine highlight(int lineIndex, SimpleDocument document) {
         String text = document.getLine(lineIndex).toString();
         if ("".equals(text)) {
             text = " ";
         }
-        AttributedString coloredString = new AttributedString(text, Utilities.attributesMap);
-
-        Color chars[] = new Color[text.length()];
+        if (text.length() > LONG_LINE) {
+            return new StyledLine(text, null);
+        }
+        return new StyledLine(text, tokenRuns(lineIndex, document));
+    }
 
-        fillBounds(chars, document.getIdentifiersBounds(lineIndex), Utilities.IDENTIFIERS_COLOR);
-        fillBounds(chars, document.getKeywordsBounds(lineIndex), Utilities.KEYWORD_COLOR);
-        fillBounds(chars, document.getLiteralsBounds(lineIndex), Utilities.LITERAL_COLOR);
-        fillBounds(chars, document.getBracketsBounds(lineIndex), Utilities.BRACKET_COLOR);
-        fillBounds(chars, document.getCommentsBounds(lineIndex), Utilities.COMMENT_COLOR);
+    private static StyleRuns tokenRuns(int lineIndex, SimpleDocument document) {
+        if (!document.isLineAnalysed(lineIndex)) {
+            return new StyleRuns(0);
+        }
+        LineTokens tokens = document.getTokens(lineIndex);
+        StyleRuns runs = new StyleRuns(tokens.size());
+        for (int i = 0; i < tokens.size(); ++i) {
+            runs.add(tokens.start(i), tokens.end(i), tokens.kind(i));
+        }
+        return runs;
+    }
 
-        paintBounds(coloredString, createBounds(chars));
+    private static AttributedString paint(String text, StyleRuns runs) {
+        AttributedString coloredString = new AttributedString(text, Utilities.attributesMap);
+        for (int i = 0; i < runs.size(); ++i) {
+            coloredString.addAttribute(TextAttribute.FOREGROUND, STYLES[runs.style(i)], runs.start(i), runs.end(i));
+        }
         return coloredString;
     }
 
-    public static TextLayout getTextLayout(int lineIndex, SimpleDocument document) {
-        return new TextLayout(getAttributedString(lineIndex, document).getIterator(), Utilities.DEFAULT_FRC);
+    private static boolean hasBrackets(int lineIndex, SimpleDocument document) {
+        return (document.getLineInfo(lineIndex).matchingBracket != -1) || (document.getCaretLineIndex() == lineIndex);
     }
 
-    private static void fillBounds(Color chars[], List<Pair<Integer, Integer>> bounds, Color color) {
-        for (Pair<Integer, Integer> bound : bounds) {
-            for (int i = bound.getFirst(); i < bound.getSecond(); ++i) {
-                chars[i] = color;
+    private static float[] offsets(String text) {
+        float[] offsets = new float[text.length() / SLICE_STEP + 1];
+        float x = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (i % SLICE_STEP == 0) {
+                offsets[i / SLICE_STEP] = x;
             }
+            x += advance(text.charAt(i));
+        }
+        if (text.length() % SLICE_STEP == 0) {
+            offsets[offsets.length - 1] = x;
         }
+        return offsets;
     }
 
-    private static List<Pair<Pair<Integer, Integer>, Color>> createBounds(Color chars[]) {
-        List<Pair<Pair<Integer, Integer>, Color>> ans = new ArrayList<>();
-        int start = 0;
-        for (int i = 1; i < chars.length - 1; ++i) {
-            if (chars[start] != chars[i]) {
-                if (chars[start] != null) {
-                    ans.add(new Pair<>(new Pair<>(start, i), chars[start]));
+    private static int[] wrap(String text, int width) {
+        int[] starts = new int[4];
+        int size = 1;
+        int rowStart = 0;
+        int lastBreak = -1;
+        float x = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            float advance = advance(c);
+            if (Character.isWhitespace(c)) {
+                lastBreak = i + 1;
+            } else if ((x + advance > width) && (i > rowStart)) {
+                rowStart = lastBreak > rowStart ? lastBreak : i;
+                if (size == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * size);
+                }
+                starts[size++] = rowStart;
+                x = 0;
+                for (int j = rowStart; j < i; ++j) {
+                    x += advance(text.charAt(j));
                 }
-                start = i;
             }
+            x += advance;
         }
-        if (chars[start] != null) {
-            ans.add(new Pair<>(new Pair<>(start, chars.length), chars[start]));
-        }
-        return ans;
+        return Arrays.copyOf(starts, size);
     }
 
-    private static void paintBounds(AttributedString coloredString, List<Pair<Pair<Integer, Integer>, Color>> bounds) {
-        for (Pair<Pair<Integer, Integer>, Color> bound : bounds) {
-            coloredString.addAttribute(TextAttribute.FOREGROUND, bound.getSecond(), bound.getFirst().getFirst(),
-                    bound.getFirst().getSecond());
+    private static float advance(char c) {
+        float advance = ADVANCES[c];
+        if (Float.isNaN(advance)) {
+            advance = (float) FONT.getStringBounds(String.valueOf(c), Utilities.DEFAULT_FRC).getWidth();
+            ADVANCES[c] = advance;
         }
+        return advance;
     }
 
-}
\ No newline at end of file
+    private static class StyledLine {
+        private final String text;
+        private final float[] offsets;
+        private StyleRuns runs;
+        private AttributedString coloredString;
+        private TextLayout layout;
+        private LineSlice slice;
+        private int wrapWidth;
+        private int[] rowStarts;
+        private LineSlice[] rowSlices;
+        private int[] checkpoints;
+        private IntRangeList brackets;
+        private IntRangeList sliceBrackets;
+        private int version;
+
+        private StyledLine(String text, StyleRuns runs) {
+            this.text = text;
+            this.runs = runs;
+            if (runs == null) {
+                offsets = offsets(text);
+            } else {
+                offsets = null;
+                coloredString = paint(text, runs);
+            }
+        }
+
+        private AttributedString getColoredString(int lineIndex, SimpleDocument document) {
+            if (coloredString == null) {
+                runs = tokenRuns(lineIndex, document);
+                coloredString = paint(text, runs);
+            }
+            if (!hasBrackets(lineIndex, document)) {
+                return coloredString;
+            }
+            IntRangeList brackets = bracketsBounds(lineIndex, document);
+            if (brackets.isEmpty()) {
+                return coloredString;
+            }
+            brackets.sort();
+            return paint(text, runs.overlay(brackets, BRACKET_STYLE, LineTokens.COMMENT, text.length()));
+        }
+
+        private LineSlice getSlice(int lineIndex, SimpleDocument document, int x, int width) {
+            int first = Math.max(step(x) - 1, 0);
+            int from = first * SLICE_STEP;
+            int to = Math.min((step(x + width) + 2) * SLICE_STEP, text.length());
+            boolean brackets = hasBrackets(lineIndex, document);
+            if ((!brackets) && (slice != null) && (slice.start == from) && (slice.end == to)) {
+                return slice;
+            }
+            LineSlice result = buildSlice(lineIndex, document, from, to, offsets[first], brackets);
+            if (!brackets) {
+                slice = result;
+            }
+            return result;
+        }
+
+        private int[] getRowStarts(int width) {
+            if ((rowStarts == null) || (wrapWidth != width)) {
+                rowStarts = wrap(text, width);
+                rowSlices = new LineSlice[rowStarts.length];
+                wrapWidth = width;
+            }
+            return rowStarts;
+        }
+
+        private LineSlice getRowSlice(int lineIndex, SimpleDocument document, int row, int width) {
+            int[] starts = getRowStarts(width);
+            row = Math.min(row, starts.length - 1);
+            boolean brackets = hasBrackets(lineIndex, document);
+            if ((!brackets) && (rowSlices[row] != null)) {
+                return rowSlices[row];
+            }
+            int to = row + 1 < starts.length ? starts[row + 1] : text.length();
+            LineSlice result = buildSlice(lineIndex, document, starts[row], to, 0, brackets);
+            if (!brackets) {
+                rowSlices[row] = result;
+            }
+            return result;
+        }
+
+        private LineSlice buildSlice(int lineIndex, SimpleDocument document, int from, int to, float x,
+                                     boolean brackets) {
+            StyleRuns sliceRuns;
+            if (runs != null) {
+                sliceRuns = runs.slice(from, to);
+            } else {
+                sliceRuns = new StyleRuns(16);
+                if (document.isLineAnalysed(lineIndex)) {
+                    if (checkpoints == null) {
+                        checkpoints = document.getCheckpoints(lineIndex);
+                    }
+                    LineTokens tokens = document.getTokens(lineIndex, from, to, checkpoints);
+                    for (int i = 0; i < tokens.size(); ++i) {
+                        sliceRuns.add(Math.max(tokens.start(i), from) - from, Math.min(tokens.end(i), to) - from,
+                                tokens.kind(i));
+                    }
+                }
+            }
+            if (brackets) {
+                IntRangeList bounds = bracketsBounds(lineIndex, document);
+                if (sliceBrackets == null) {
+                    sliceBrackets = new IntRangeList();
+                }
+                IntRangeList sliceBounds = sliceBrackets;
+                sliceBounds.clear();
+                for (int i = 0; i < bounds.size(); ++i) {
+                    if ((bounds.end(i) > from) && (bounds.start(i) < to)) {
+                        sliceBounds.add(Math.max(bounds.start(i), from) - from, Math.min(bounds.end(i), to) - from);
+                    }
+                }
+                sliceBounds.sort();
+                sliceRuns = sliceRuns.overlay(sliceBounds, BRACKET_STYLE, LineTokens.COMMENT, to - from);
+            }
+            AttributedString sliceString = paint(text.substring(from, to), sliceRuns);
+            return new LineSlice(from, to, x, new TextLayout(sliceString.getIterator(), Utilities.DEFAULT_FRC));
+        }
+
+        private IntRangeList bracketsBounds(int lineIndex, SimpleDocument document) {
+            if (brackets == null) {
+                brackets = new IntRangeList();
+            }
+            document.getBracketsBounds(lineIndex, brackets);
+            return brackets;
+        }
+
+        private int step(int x) {
+            int low = 0;
+            int high = offsets.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (offsets[middle] <= x) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+}
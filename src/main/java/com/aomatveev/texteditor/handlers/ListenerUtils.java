@@ -1,23 +1,23 @@
 package com.aomatveev.texteditor.handlers;
 
+import com.aomatveev.texteditor.gui.LineSlice;
 import com.aomatveev.texteditor.gui.SimpleTextComponent;
 import com.aomatveev.texteditor.primitives.Pair;
 
 import java.awt.event.MouseEvent;
 import java.awt.font.TextHitInfo;
-import java.awt.font.TextLayout;
 
 public class ListenerUtils {
     public static Pair<Integer, Integer> findPosition(MouseEvent e, SimpleTextComponent viewModel) {
         int clickX = e.getX();
         int clickY = e.getY();
 
-        int lineIndex = clickY / viewModel.getLineSpacing();
+        LineSlice slice = viewModel.getSliceAtRow(clickY / viewModel.getLineSpacing());
+        int lineIndex = viewModel.getFoundLine();
         int charIndex = 0;
-        TextLayout layout = viewModel.getTextLayout(lineIndex);
         if (lineIndex < viewModel.linesSize()) {
-            TextHitInfo currentHit = layout.hitTestChar(clickX, 0);
-            charIndex = currentHit.getInsertionIndex();
+            TextHitInfo currentHit = slice.layout.hitTestChar(clickX - slice.x, 0);
+            charIndex = slice.start + currentHit.getInsertionIndex();
         }
         return new Pair<>(lineIndex, charIndex);
     }
@@ -0,0 +1,41 @@
+package com.aomatveev.texteditor.model;
+
+public class DocumentContent {
+    private final TextBuffer buffer;
+    private final LineLengths lineLengths;
+    private int linesSize;
+    private int lastLineLength;
+
+    public DocumentContent() {
+        buffer = new TextBuffer();
+        lineLengths = new LineLengths();
+        linesSize = 1;
+    }
+
+    public void append(char[] buf, int offset, int count) {
+        buffer.append(buf, offset, count);
+        for (int i = offset; i < offset + count; ++i) {
+            if (buf[i] == '\n') {
+                linesSize += 1;
+                lineLengths.add(lastLineLength);
+                lastLineLength = 0;
+            } else {
+                lastLineLength += 1;
+            }
+        }
+    }
+
+    public int linesSize() {
+        return linesSize;
+    }
+
+    LineTree createLineInfos() {
+        return new LineTree(linesSize);
+    }
+
+    PieceTable createStore() {
+        LineLengths storeLineLengths = new LineLengths(lineLengths);
+        storeLineLengths.add(lastLineLength);
+        return new PieceTable(buffer, storeLineLengths);
+    }
+}
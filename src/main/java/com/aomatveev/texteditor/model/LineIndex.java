@@ -0,0 +1,248 @@
+package com.aomatveev.texteditor.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LineIndex {
+
+    static final long WINDOW_SIZE = 1L << 28;
+
+    private static final int DECODE_CHUNK = 1 << 16;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean singleByte;
+    private final CharsetDecoder decoder;
+    private ByteBuffer undecodedBytes;
+    private CharBuffer decodedChars;
+    private final long fileSize;
+    private final MappedByteBuffer[] windows;
+    private final LineLengths lineLengths;
+    private long[] lineStarts;
+    private int[] charLengths;
+    private int measuredLines;
+    private int linesSize;
+    private long scannedBytes;
+    private int maxLineBytes;
+    private int lineChars;
+
+    public LineIndex(FileChannel channel, Charset charset) throws IOException {
+        this.channel = channel;
+        this.charset = charset;
+        utf8 = charset.equals(StandardCharsets.UTF_8);
+        singleByte = (!utf8) && charset.canEncode() && (charset.newEncoder().maxBytesPerChar() == 1);
+        decoder = (utf8 || singleByte) ? null : charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        fileSize = channel.size();
+        windows = new MappedByteBuffer[(int) ((fileSize + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+        lineStarts = new long[1024];
+        charLengths = new int[1024];
+        lineLengths = new LineLengths();
+        linesSize = 1;
+        if (fileSize == 0) {
+            recordLineLength(0);
+        }
+    }
+
+    public boolean scanNextWindow() throws IOException {
+        if (isComplete()) {
+            return false;
+        }
+        long size = Math.min(WINDOW_SIZE, fileSize - scannedBytes);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, scannedBytes, size);
+        for (int i = 0; i < size; ++i) {
+            byte b = window.get(i);
+            if (b == '\n') {
+                addLine(scannedBytes + i + 1);
+            } else if (singleByte) {
+                lineChars += 1;
+            } else if ((utf8) && ((b & 0xC0) != 0x80)) {
+                lineChars += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        scannedBytes += size;
+        if (decoder != null) {
+            decodeLineLengths(window);
+        }
+        if (isComplete()) {
+            updateMaxLineBytes(linesSize - 1);
+            recordLineLength(lineChars);
+        }
+        return true;
+    }
+
+    public boolean isComplete() {
+        return scannedBytes == fileSize;
+    }
+
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public int linesSize() {
+        return linesSize;
+    }
+
+    public int getMaxLineBytes() {
+        return maxLineBytes;
+    }
+
+    public int getMaxLineLength() {
+        return lineLengths.max();
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    LineLengths createLineLengths() {
+        return new LineLengths(lineLengths);
+    }
+
+    int lineLength(int lineIndex) {
+        return charLengths[lineIndex];
+    }
+
+    long charsSize(int fromLine, int toLine) {
+        long chars = toLine - fromLine;
+        for (int i = fromLine; i <= toLine; ++i) {
+            chars += charLengths[i];
+        }
+        return chars;
+    }
+
+    void setLineLength(int lineIndex, int length) {
+        lineLengths.remove(charLengths[lineIndex]);
+        lineLengths.add(length);
+        charLengths[lineIndex] = length;
+    }
+
+    public long lineStart(int lineIndex) {
+        return lineStarts[lineIndex];
+    }
+
+    public long lineEnd(int lineIndex) {
+        if (lineIndex + 1 < linesSize) {
+            return lineStarts[lineIndex + 1] - 1;
+        }
+        return fileSize;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    List<ByteBuffer> map(long start, long end) {
+        List<ByteBuffer> bytes = new ArrayList<>();
+        while (start < end) {
+            int windowIndex = (int) (start / WINDOW_SIZE);
+            int offset = (int) (start % WINDOW_SIZE);
+            int count = (int) Math.min(end - start, WINDOW_SIZE - offset);
+            ByteBuffer part = window(windowIndex).duplicate();
+            part.position(offset);
+            part.limit(offset + count);
+            bytes.add(part);
+            start += count;
+        }
+        return bytes;
+    }
+
+    private MappedByteBuffer window(int windowIndex) {
+        if (windows[windowIndex] == null) {
+            long start = windowIndex * WINDOW_SIZE;
+            long size = Math.min(WINDOW_SIZE, fileSize - start);
+            try {
+                windows[windowIndex] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return windows[windowIndex];
+    }
+
+    private void addLine(long start) {
+        if (linesSize == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+        }
+        lineStarts[linesSize++] = start;
+        updateMaxLineBytes(linesSize - 2);
+        if (decoder == null) {
+            recordLineLength(lineChars);
+            lineChars = 0;
+        }
+    }
+
+    private void recordLineLength(int length) {
+        if (measuredLines == charLengths.length) {
+            charLengths = Arrays.copyOf(charLengths, charLengths.length * 2);
+        }
+        charLengths[measuredLines++] = length;
+        lineLengths.add(length);
+    }
+
+    private void decodeLineLengths(ByteBuffer window) {
+        if (undecodedBytes == null) {
+            undecodedBytes = ByteBuffer.allocate(DECODE_CHUNK);
+            decodedChars = CharBuffer.allocate(DECODE_CHUNK);
+        }
+        ByteBuffer bytes = undecodedBytes;
+        CharBuffer chars = decodedChars;
+        window.clear();
+        while (true) {
+            int count = Math.min(window.remaining(), bytes.remaining());
+            ByteBuffer chunk = window.duplicate();
+            chunk.limit(chunk.position() + count);
+            bytes.put(chunk);
+            window.position(window.position() + count);
+            bytes.flip();
+            boolean endOfInput = (isComplete()) && (!window.hasRemaining());
+            while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                countLineChars(chars);
+            }
+            if (endOfInput) {
+                while (decoder.flush(chars).isOverflow()) {
+                    countLineChars(chars);
+                }
+            }
+            countLineChars(chars);
+            bytes.compact();
+            if (!window.hasRemaining()) {
+                return;
+            }
+        }
+    }
+
+    private void countLineChars(CharBuffer chars) {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            if (chars.get() == '\n') {
+                recordLineLength(lineChars);
+                lineChars = 0;
+            } else {
+                lineChars += 1;
+            }
+        }
+        chars.clear();
+    }
+
+    private void updateMaxLineBytes(int lineIndex) {
+        maxLineBytes = (int) Math.max(maxLineBytes, Math.min(Integer.MAX_VALUE, lineEnd(lineIndex) - lineStart(lineIndex)));
+    }
+}
@@ -0,0 +1,63 @@
+package com.aomatveev.texteditor.model;
+
+public class LineInfo {
+    public static final int BRACKET_TYPES = 3;
+    private static final int[] EMPTY = new int[0];
+
+    public int matchingBracket;
+    public int lineCommentIndex;
+    public int[] textComments;
+    public int lexerState;
+    public int version;
+    public int[] brackets;
+    public int rows;
+    int[] bracketBalance;
+
+    public LineInfo() {
+        rows = 1;
+        resetSyntax();
+    }
+
+    public void resetSyntax() {
+        matchingBracket = -1;
+        lineCommentIndex = -1;
+        textComments = EMPTY;
+        lexerState = -1;
+        version += 1;
+        brackets = EMPTY;
+        bracketBalance = null;
+    }
+
+    public boolean isCommented(int charIndex) {
+        if ((lineCommentIndex != -1) && (charIndex >= lineCommentIndex)) {
+            return true;
+        }
+        int low = 0;
+        int high = textComments.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (textComments[2 * middle + 1] <= charIndex) {
+                low = middle + 1;
+            } else if (textComments[2 * middle] > charIndex) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setBrackets(int[] brackets) {
+        this.brackets = brackets;
+        bracketBalance = null;
+        if (brackets.length == 0) {
+            return;
+        }
+        bracketBalance = new int[2 * BRACKET_TYPES];
+        for (int bracket : brackets) {
+            int type = (bracket & 7) >> 1;
+            bracketBalance[2 * type] += (bracket & 1) == 0 ? 1 : -1;
+            bracketBalance[2 * type + 1] = Math.min(bracketBalance[2 * type + 1], bracketBalance[2 * type]);
+        }
+    }
+}
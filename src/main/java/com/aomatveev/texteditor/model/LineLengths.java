@@ -0,0 +1,57 @@
+package com.aomatveev.texteditor.model;
+
+import java.util.TreeMap;
+
+class LineLengths {
+    private static final int SHORT_LENGTHS = 1024;
+
+    private final int[] shortCounts;
+    private final TreeMap<Integer, Integer> longCounts;
+    private int shortMax;
+
+    LineLengths() {
+        shortCounts = new int[SHORT_LENGTHS];
+        longCounts = new TreeMap<>();
+    }
+
+    LineLengths(LineLengths other) {
+        shortCounts = other.shortCounts.clone();
+        longCounts = new TreeMap<>(other.longCounts);
+        shortMax = other.shortMax;
+    }
+
+    void add(int length) {
+        if (length < SHORT_LENGTHS) {
+            shortCounts[length] += 1;
+            shortMax = Math.max(shortMax, length);
+        } else {
+            longCounts.merge(length, 1, Integer::sum);
+        }
+    }
+
+    void remove(int length) {
+        if (length >= SHORT_LENGTHS) {
+            Integer count = longCounts.get(length);
+            if (count == null) {
+                throw new IllegalStateException("No line of length " + length);
+            }
+            if (count == 1) {
+                longCounts.remove(length);
+            } else {
+                longCounts.put(length, count - 1);
+            }
+            return;
+        }
+        if (shortCounts[length] == 0) {
+            throw new IllegalStateException("No line of length " + length);
+        }
+        shortCounts[length] -= 1;
+        while ((shortMax > 0) && (shortCounts[shortMax] == 0)) {
+            shortMax -= 1;
+        }
+    }
+
+    int max() {
+        return longCounts.isEmpty() ? shortMax : longCounts.lastKey();
+    }
+}
@@ -0,0 +1,559 @@
+package com.aomatveev.texteditor.model;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class LineTree {
+
+    private static final int CHUNK_CAPACITY = 64;
+
+    private final Random random;
+    private Chunk root;
+    private int foundChunkStart;
+    private int foundBalance;
+    private int foundRow;
+
+    public LineTree() {
+        random = new Random();
+    }
+
+    public LineTree(int size) {
+        this();
+        if (size > 0) {
+            root = newRun(size);
+        }
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public LineInfo get(int index) {
+        Chunk t = chunkAt(index);
+        if (t.items == null) {
+            return null;
+        }
+        return t.items[index - foundChunkStart];
+    }
+
+    public void set(int index, LineInfo info) {
+        Chunk t = chunkAt(index);
+        if (t.items != null) {
+            t.items[index - foundChunkStart] = info;
+            refresh(index, index);
+            return;
+        }
+        int count = Math.min(foundChunkStart + t.count - index, CHUNK_CAPACITY / 2);
+        Chunk chunk = newChunk();
+        chunk.count = count;
+        chunk.items[0] = info;
+        updateOwn(chunk);
+        update(chunk);
+        Chunk[] head = split(index);
+        root = head[1];
+        Chunk[] tail = split(count);
+        root = merge(merge(head[0], chunk), tail[1]);
+    }
+
+    public void add(LineInfo info) {
+        insert(size(), info);
+    }
+
+    public void insert(int index, LineInfo info) {
+        if (root == null) {
+            root = newChunk();
+        }
+        if (findChunk(index).items == null) {
+            Chunk[] parts = split(index);
+            root = merge(merge(parts[0], newChunk()), parts[1]);
+        }
+        while (findChunk(index).count == CHUNK_CAPACITY) {
+            Chunk[] parts = split(foundChunkStart + CHUNK_CAPACITY / 2);
+            root = merge(parts[0], parts[1]);
+        }
+        insert(root, index, info);
+    }
+
+    public void insertRun(int index, int count) {
+        if (count == 0) {
+            return;
+        }
+        Chunk[] parts = split(index);
+        root = merge(merge(parts[0], newRun(count)), parts[1]);
+    }
+
+    public void remove(int index) {
+        root = remove(root, index);
+    }
+
+    public void removeRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        Chunk[] head = split(from);
+        root = head[1];
+        Chunk[] tail = split(to - from);
+        root = merge(head[0], tail[1]);
+    }
+
+    public void forEach(Consumer<LineInfo> action) {
+        forEach(root, action);
+    }
+
+    public void forEach(int from, int to, Consumer<LineInfo> action) {
+        forEach(root, 0, from, to, action);
+    }
+
+    public void refresh(int from, int to) {
+        refresh(root, 0, from, to);
+    }
+
+    public boolean hasUnlexedLines() {
+        return (root != null) && (root.totalUnlexed > 0);
+    }
+
+    public int findCloseBracketLine(int fromLine, int type, int balance) {
+        foundBalance = balance;
+        return findCloseBracketLine(root, 0, fromLine, type);
+    }
+
+    public int findOpenBracketLine(int fromLine, int type, int balance) {
+        foundBalance = balance;
+        return findOpenBracketLine(root, 0, fromLine, type);
+    }
+
+    public int getFoundBalance() {
+        return foundBalance;
+    }
+
+    public int rowsSize() {
+        return rows(root);
+    }
+
+    public int rowOf(int index) {
+        Chunk t = root;
+        int row = 0;
+        while (t != null) {
+            int leftSize = size(t.left);
+            if (index < leftSize) {
+                t = t.left;
+                continue;
+            }
+            row += rows(t.left);
+            index -= leftSize;
+            if (index < t.count) {
+                return row + leadingRows(t, index);
+            }
+            row += t.ownRows;
+            index -= t.count;
+            t = t.right;
+        }
+        return row;
+    }
+
+    public int findLineAtRow(int row) {
+        Chunk t = root;
+        int line = 0;
+        foundRow = 0;
+        while (t != null) {
+            int leftRows = rows(t.left);
+            if (row < leftRows) {
+                t = t.left;
+                continue;
+            }
+            row -= leftRows;
+            line += size(t.left);
+            foundRow += leftRows;
+            if (row < t.ownRows) {
+                if (t.items == null) {
+                    foundRow += row;
+                    return line + row;
+                }
+                for (int i = 0; ; ++i) {
+                    int lineRows = rows(t.items[i]);
+                    if (row < lineRows) {
+                        return line + i;
+                    }
+                    row -= lineRows;
+                    foundRow += lineRows;
+                }
+            }
+            row -= t.ownRows;
+            line += t.count;
+            foundRow += t.ownRows;
+            t = t.right;
+        }
+        return line;
+    }
+
+    public int getFoundRow() {
+        return foundRow;
+    }
+
+    private Chunk chunkAt(int index) {
+        Chunk t = root;
+        foundChunkStart = 0;
+        while (t != null) {
+            int leftSize = size(t.left);
+            if (index < leftSize) {
+                t = t.left;
+            } else if (index < leftSize + t.count) {
+                foundChunkStart += leftSize;
+                return t;
+            } else {
+                index -= leftSize + t.count;
+                foundChunkStart += leftSize + t.count;
+                t = t.right;
+            }
+        }
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+
+    private Chunk findChunk(int index) {
+        Chunk t = root;
+        foundChunkStart = 0;
+        while (true) {
+            int leftSize = size(t.left);
+            if (insertsLeft(t, index)) {
+                t = t.left;
+            } else if (insertsHere(t, index)) {
+                foundChunkStart += leftSize;
+                return t;
+            } else {
+                index -= leftSize + t.count;
+                foundChunkStart += leftSize + t.count;
+                t = t.right;
+            }
+        }
+    }
+
+    private void insert(Chunk t, int index, LineInfo info) {
+        int leftSize = size(t.left);
+        if (insertsLeft(t, index)) {
+            insert(t.left, index, info);
+        } else if (insertsHere(t, index)) {
+            int position = index - leftSize;
+            System.arraycopy(t.items, position, t.items, position + 1, t.count - position);
+            t.items[position] = info;
+            t.count += 1;
+            updateOwn(t);
+        } else {
+            insert(t.right, index - leftSize - t.count, info);
+        }
+        update(t);
+    }
+
+    private Chunk remove(Chunk t, int index) {
+        if (t == null) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        int leftSize = size(t.left);
+        if (index < leftSize) {
+            t.left = remove(t.left, index);
+        } else if (index < leftSize + t.count) {
+            int position = index - leftSize;
+            t.count -= 1;
+            if (t.items != null) {
+                System.arraycopy(t.items, position + 1, t.items, position, t.count - position);
+                t.items[t.count] = null;
+            }
+            updateOwn(t);
+            if (t.count == 0) {
+                return merge(t.left, t.right);
+            }
+        } else {
+            t.right = remove(t.right, index - leftSize - t.count);
+        }
+        update(t);
+        return t;
+    }
+
+    private Chunk[] split(int index) {
+        Chunk tail = detachTail(root, index);
+        Chunk[] parts = split(root, index);
+        parts[1] = merge(tail, parts[1]);
+        return parts;
+    }
+
+    private Chunk[] split(Chunk t, int index) {
+        if (t == null) {
+            return new Chunk[]{null, null};
+        }
+        int leftSize = size(t.left);
+        if (index <= leftSize) {
+            Chunk[] parts = split(t.left, index);
+            t.left = parts[1];
+            update(t);
+            return new Chunk[]{parts[0], t};
+        } else {
+            Chunk[] parts = split(t.right, index - leftSize - t.count);
+            t.right = parts[0];
+            update(t);
+            return new Chunk[]{t, parts[1]};
+        }
+    }
+
+    private Chunk detachTail(Chunk t, int index) {
+        if (t == null) {
+            return null;
+        }
+        int leftSize = size(t.left);
+        Chunk tail;
+        if (index <= leftSize) {
+            tail = detachTail(t.left, index);
+        } else if (index >= leftSize + t.count) {
+            tail = detachTail(t.right, index - leftSize - t.count);
+        } else {
+            int cut = index - leftSize;
+            if (t.items == null) {
+                tail = newRun(t.count - cut);
+            } else {
+                tail = newChunk();
+                tail.count = t.count - cut;
+                System.arraycopy(t.items, cut, tail.items, 0, tail.count);
+                for (int i = cut; i < t.count; ++i) {
+                    t.items[i] = null;
+                }
+            }
+            t.count = cut;
+            updateOwn(t);
+            updateOwn(tail);
+            update(tail);
+        }
+        if (tail != null) {
+            update(t);
+        }
+        return tail;
+    }
+
+    private Chunk merge(Chunk a, Chunk b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
+        }
+    }
+
+    private void refresh(Chunk t, int start, int from, int to) {
+        if ((t == null) || (start > to) || (start + t.size <= from)) {
+            return;
+        }
+        refresh(t.left, start, from, to);
+        int chunkStart = start + size(t.left);
+        if ((chunkStart <= to) && (chunkStart + t.count > from)) {
+            updateOwn(t);
+        }
+        refresh(t.right, chunkStart + t.count, from, to);
+        update(t);
+    }
+
+    private int findCloseBracketLine(Chunk t, int start, int fromLine, int type) {
+        if ((t == null) || (start + t.size <= fromLine)) {
+            return -1;
+        }
+        if ((start >= fromLine) && (foundBalance + t.totalBalance[2 * type + 1] > 0)) {
+            foundBalance += t.totalBalance[2 * type];
+            return -1;
+        }
+        int line = findCloseBracketLine(t.left, start, fromLine, type);
+        if (line != -1) {
+            return line;
+        }
+        int chunkStart = start + size(t.left);
+        if ((chunkStart >= fromLine) && (foundBalance + t.ownBalance[2 * type + 1] > 0)) {
+            foundBalance += t.ownBalance[2 * type];
+        } else if (t.items != null) {
+            for (int i = Math.max(fromLine - chunkStart, 0); i < t.count; ++i) {
+                int[] balance = t.items[i] == null ? null : t.items[i].bracketBalance;
+                if (balance != null) {
+                    if (foundBalance + balance[2 * type + 1] <= 0) {
+                        return chunkStart + i;
+                    }
+                    foundBalance += balance[2 * type];
+                }
+            }
+        }
+        return findCloseBracketLine(t.right, chunkStart + t.count, fromLine, type);
+    }
+
+    private int findOpenBracketLine(Chunk t, int start, int fromLine, int type) {
+        if ((t == null) || (start > fromLine)) {
+            return -1;
+        }
+        if ((start + t.size - 1 <= fromLine) && (maxSuffix(t.totalBalance, type) < foundBalance)) {
+            foundBalance -= t.totalBalance[2 * type];
+            return -1;
+        }
+        int chunkStart = start + size(t.left);
+        int line = findOpenBracketLine(t.right, chunkStart + t.count, fromLine, type);
+        if (line != -1) {
+            return line;
+        }
+        if ((chunkStart + t.count - 1 <= fromLine) && (maxSuffix(t.ownBalance, type) < foundBalance)) {
+            foundBalance -= t.ownBalance[2 * type];
+        } else if ((t.items != null) && (chunkStart <= fromLine)) {
+            for (int i = Math.min(fromLine - chunkStart, t.count - 1); i >= 0; --i) {
+                int[] balance = t.items[i] == null ? null : t.items[i].bracketBalance;
+                if (balance != null) {
+                    if (maxSuffix(balance, type) >= foundBalance) {
+                        return chunkStart + i;
+                    }
+                    foundBalance -= balance[2 * type];
+                }
+            }
+        }
+        return findOpenBracketLine(t.left, start, fromLine, type);
+    }
+
+    private void forEach(Chunk t, Consumer<LineInfo> action) {
+        if (t == null) {
+            return;
+        }
+        forEach(t.left, action);
+        if (t.items != null) {
+            for (int i = 0; i < t.count; ++i) {
+                if (t.items[i] != null) {
+                    action.accept(t.items[i]);
+                }
+            }
+        }
+        forEach(t.right, action);
+    }
+
+    private void forEach(Chunk t, int start, int from, int to, Consumer<LineInfo> action) {
+        if ((t == null) || (start > to) || (start + t.size <= from)) {
+            return;
+        }
+        forEach(t.left, start, from, to, action);
+        int chunkStart = start + size(t.left);
+        if (t.items != null) {
+            int first = Math.max(from - chunkStart, 0);
+            int last = Math.min(to - chunkStart, t.count - 1);
+            for (int i = first; i <= last; ++i) {
+                if (t.items[i] != null) {
+                    action.accept(t.items[i]);
+                }
+            }
+        }
+        forEach(t.right, chunkStart + t.count, from, to, action);
+    }
+
+    private Chunk newChunk() {
+        return new Chunk(random.nextInt(), new LineInfo[CHUNK_CAPACITY]);
+    }
+
+    private Chunk newRun(int count) {
+        Chunk run = new Chunk(random.nextInt(), null);
+        run.count = count;
+        updateOwn(run);
+        update(run);
+        return run;
+    }
+
+    private static void updateOwn(Chunk t) {
+        Arrays.fill(t.ownBalance, 0);
+        t.ownRows = leadingRows(t, t.count);
+        if (t.items == null) {
+            t.unlexed = t.count;
+            return;
+        }
+        t.unlexed = 0;
+        for (int i = 0; i < t.count; ++i) {
+            LineInfo info = t.items[i];
+            if ((info == null) || (info.lexerState == -1)) {
+                t.unlexed += 1;
+            } else if (info.bracketBalance != null) {
+                combine(t.ownBalance, info.bracketBalance);
+            }
+        }
+    }
+
+    private static int leadingRows(Chunk t, int count) {
+        if (t.items == null) {
+            return count;
+        }
+        int rows = 0;
+        for (int i = 0; i < count; ++i) {
+            rows += rows(t.items[i]);
+        }
+        return rows;
+    }
+
+    private static int rows(LineInfo info) {
+        return info == null ? 1 : info.rows;
+    }
+
+    private static void combine(int[] balance, int[] next) {
+        for (int type = 0; type < LineInfo.BRACKET_TYPES; ++type) {
+            balance[2 * type + 1] = Math.min(balance[2 * type + 1], balance[2 * type] + next[2 * type + 1]);
+            balance[2 * type] += next[2 * type];
+        }
+    }
+
+    private static int maxSuffix(int[] balance, int type) {
+        return balance[2 * type] - balance[2 * type + 1];
+    }
+
+    private static boolean insertsLeft(Chunk t, int index) {
+        int leftSize = size(t.left);
+        return (index < leftSize) || ((index == leftSize) && (t.items == null) && (t.left != null));
+    }
+
+    private static boolean insertsHere(Chunk t, int index) {
+        int end = size(t.left) + t.count;
+        return (index < end) || ((index == end) && ((t.items != null) || (t.right == null)));
+    }
+
+    private static void update(Chunk t) {
+        t.size = size(t.left) + t.count + size(t.right);
+        t.totalRows = rows(t.left) + t.ownRows + rows(t.right);
+        t.totalUnlexed = t.unlexed;
+        Arrays.fill(t.totalBalance, 0);
+        if (t.left != null) {
+            t.totalUnlexed += t.left.totalUnlexed;
+            combine(t.totalBalance, t.left.totalBalance);
+        }
+        combine(t.totalBalance, t.ownBalance);
+        if (t.right != null) {
+            t.totalUnlexed += t.right.totalUnlexed;
+            combine(t.totalBalance, t.right.totalBalance);
+        }
+    }
+
+    private static int size(Chunk t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static int rows(Chunk t) {
+        return t == null ? 0 : t.totalRows;
+    }
+
+    private static class Chunk {
+        private final LineInfo[] items;
+        private final int priority;
+        private final int[] ownBalance;
+        private final int[] totalBalance;
+        private int count;
+        private int size;
+        private int unlexed;
+        private int totalUnlexed;
+        private int ownRows;
+        private int totalRows;
+        private Chunk left;
+        private Chunk right;
+
+        private Chunk(int priority, LineInfo[] items) {
+            this.priority = priority;
+            this.items = items;
+            ownBalance = new int[2 * LineInfo.BRACKET_TYPES];
+            totalBalance = new int[2 * LineInfo.BRACKET_TYPES];
+        }
+    }
+}
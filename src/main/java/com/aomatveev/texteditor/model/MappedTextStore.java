@@ -0,0 +1,132 @@
+package com.aomatveev.texteditor.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MappedTextStore implements TextStore {
+
+    private static final int DECODED_CHARS_CACHE_SIZE = 1 << 22;
+
+    private final LineIndex index;
+    private final Charset charset;
+    private final Map<Integer, String> decodedLines;
+    private long decodedChars;
+
+    public MappedTextStore(LineIndex index, Charset charset) {
+        this.index = index;
+        this.charset = charset;
+        decodedLines = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public int linesSize() {
+        return index.linesSize();
+    }
+
+    @Override
+    public CharSequence getLine(int lineIndex) {
+        String line = decodedLines.get(lineIndex);
+        if (line == null) {
+            line = decode(index.lineStart(lineIndex), index.lineEnd(lineIndex));
+            cache(lineIndex, line);
+        }
+        return line;
+    }
+
+    @Override
+    public int lineLength(int lineIndex) {
+        return getLine(lineIndex).length();
+    }
+
+    @Override
+    public void insert(int lineIndex, int charIndex, CharSequence text) {
+    }
+
+    @Override
+    public void delete(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public int getMaxLength() {
+        return index.getMaxLineLength();
+    }
+
+    @Override
+    public TextSnapshot snapshot(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        TextSnapshot snapshot = new TextSnapshot();
+        CharSequence startLine = getLine(startLineIndex);
+        if (startLineIndex == endLineIndex) {
+            snapshot.append(startLine.subSequence(startCharIndex, endCharIndex));
+            return snapshot;
+        }
+        snapshot.append(startLine.subSequence(startCharIndex, startLine.length()));
+        snapshot.append(index.map(index.lineEnd(startLineIndex), index.lineStart(endLineIndex)), charset,
+                index.charsSize(startLineIndex + 1, endLineIndex - 1) + 2);
+        snapshot.append(getLine(endLineIndex).subSequence(0, endCharIndex));
+        return snapshot;
+    }
+
+    @Override
+    public TextSnapshot snapshot() {
+        TextSnapshot snapshot = new TextSnapshot();
+        snapshot.append(index.map(0, index.getFileSize()), charset, index.charsSize(0, linesSize() - 1));
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        try {
+            index.getChannel().close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < linesSize(); ++i) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(getLine(i));
+        }
+        return sb.toString();
+    }
+
+    private void cache(int lineIndex, String line) {
+        decodedLines.put(lineIndex, line);
+        decodedChars += line.length();
+        Iterator<String> eldest = decodedLines.values().iterator();
+        while ((decodedChars > DECODED_CHARS_CACHE_SIZE) && (decodedLines.size() > 1)) {
+            decodedChars -= eldest.next().length();
+            eldest.remove();
+        }
+    }
+
+    private String decode(long start, long end) {
+        List<ByteBuffer> parts = index.map(start, end);
+        if (parts.isEmpty()) {
+            return "";
+        }
+        if (parts.size() == 1) {
+            return charset.decode(parts.get(0)).toString();
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        for (ByteBuffer part : parts) {
+            bytes.put(part);
+        }
+        bytes.flip();
+        return charset.decode(bytes).toString();
+    }
+}
@@ -0,0 +1,413 @@
+package com.aomatveev.texteditor.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PagedTextStore implements TextStore {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private static final int BLOCK_LINES = 1024;
+    private static final int LINE_OVERHEAD = 64;
+
+    private final LineIndex index;
+    private final Charset charset;
+    private final long memoryBudget;
+    private final List<Block> blocks;
+    private final Map<Block, Boolean> cleanBlocks;
+    private final LineLengths lineLengths;
+    private int[] blockLines;
+    private int linesSize;
+    private int foundBlock;
+    private int foundLine;
+    private long loadedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PagedTextStore(LineIndex index, Charset charset, long memoryBudget) {
+        this.index = index;
+        this.charset = charset;
+        this.memoryBudget = memoryBudget;
+        blocks = new ArrayList<>();
+        cleanBlocks = new LinkedHashMap<>(16, 0.75f, true);
+        lineLengths = index.createLineLengths();
+        linesSize = index.linesSize();
+        for (int first = 0; first < linesSize; first += BLOCK_LINES) {
+            blocks.add(new Block(first, Math.min(BLOCK_LINES, linesSize - first)));
+        }
+        rebuildBlockLines();
+    }
+
+    @Override
+    public int linesSize() {
+        return linesSize;
+    }
+
+    @Override
+    public CharSequence getLine(int lineIndex) {
+        Block block = findBlock(lineIndex);
+        return lines(block).get(foundLine);
+    }
+
+    @Override
+    public int lineLength(int lineIndex) {
+        return getLine(lineIndex).length();
+    }
+
+    @Override
+    public void insert(int lineIndex, int charIndex, CharSequence text) {
+        Block block = findBlock(lineIndex);
+        int blockIndex = foundBlock;
+        List<StringBuilder> lines = modify(block);
+        StringBuilder line = lines.get(foundLine);
+        resize(block, 2L * text.length());
+        lineLengths.remove(line.length());
+        int lineFeed = indexOf(text, 0);
+        if (lineFeed == -1) {
+            line.insert(charIndex, text);
+            lineLengths.add(line.length());
+            return;
+        }
+        String tail = line.substring(charIndex);
+        line.setLength(charIndex);
+        line.append(text, 0, lineFeed);
+        List<StringBuilder> newLines = new ArrayList<>();
+        while (lineFeed != -1) {
+            int next = indexOf(text, lineFeed + 1);
+            int end = next == -1 ? text.length() : next;
+            newLines.add(new StringBuilder(end - lineFeed - 1).append(text, lineFeed + 1, end));
+            lineFeed = next;
+        }
+        newLines.get(newLines.size() - 1).append(tail);
+        lineLengths.add(line.length());
+        for (StringBuilder newLine : newLines) {
+            lineLengths.add(newLine.length());
+        }
+        lines.addAll(foundLine + 1, newLines);
+        resize(block, (long) LINE_OVERHEAD * newLines.size());
+        changeLines(blockIndex, newLines.size());
+        if (lines.size() > 2 * BLOCK_LINES) {
+            splitBlock(blockIndex);
+        }
+    }
+
+    @Override
+    public void delete(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        if (startLineIndex == endLineIndex) {
+            Block block = findBlock(startLineIndex);
+            StringBuilder line = modify(block).get(foundLine);
+            lineLengths.remove(line.length());
+            line.delete(startCharIndex, endCharIndex);
+            lineLengths.add(line.length());
+            resize(block, -2L * (endCharIndex - startCharIndex));
+            return;
+        }
+        Block endBlock = findBlock(endLineIndex);
+        CharSequence endLine = lines(endBlock).get(foundLine);
+        String tail = endLine.subSequence(endCharIndex, endLine.length()).toString();
+        removeLines(startLineIndex + 1, endLineIndex + 1);
+        Block block = findBlock(startLineIndex);
+        StringBuilder line = modify(block).get(foundLine);
+        resize(block, 2L * (startCharIndex + tail.length() - line.length()));
+        lineLengths.remove(line.length());
+        line.setLength(startCharIndex);
+        line.append(tail);
+        lineLengths.add(line.length());
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public int getMaxLength() {
+        return lineLengths.max();
+    }
+
+    @Override
+    public TextSnapshot snapshot(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        TextSnapshot snapshot = new TextSnapshot();
+        CharSequence startLine = getLine(startLineIndex);
+        if (startLineIndex == endLineIndex) {
+            snapshot.append(startLine.subSequence(startCharIndex, endCharIndex));
+            return snapshot;
+        }
+        snapshot.append(startLine.subSequence(startCharIndex, startLine.length()));
+        snapshot.append("\n");
+        if (endLineIndex > startLineIndex + 1) {
+            appendLines(snapshot, startLineIndex + 1, endLineIndex - 1);
+            snapshot.append("\n");
+        }
+        snapshot.append(getLine(endLineIndex).subSequence(0, endCharIndex));
+        return snapshot;
+    }
+
+    @Override
+    public TextSnapshot snapshot() {
+        TextSnapshot snapshot = new TextSnapshot();
+        appendLines(snapshot, 0, linesSize - 1);
+        return snapshot;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public void close() {
+        try {
+            index.getChannel().close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < linesSize; ++i) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(getLine(i));
+        }
+        return sb.toString();
+    }
+
+    private Block findBlock(int lineIndex) {
+        if ((lineIndex < 0) || (lineIndex >= linesSize)) {
+            throw new IndexOutOfBoundsException(String.valueOf(lineIndex));
+        }
+        int position = 0;
+        int remaining = lineIndex;
+        for (int step = Integer.highestOneBit(blocks.size()); step > 0; step >>= 1) {
+            int next = position + step;
+            if ((next <= blocks.size()) && (blockLines[next] <= remaining)) {
+                position = next;
+                remaining -= blockLines[next];
+            }
+        }
+        foundBlock = position;
+        foundLine = remaining;
+        return blocks.get(position);
+    }
+
+    private List<StringBuilder> lines(Block block) {
+        if (block.lines != null) {
+            hits += 1;
+            if (!block.dirty) {
+                cleanBlocks.get(block);
+            }
+            return block.lines;
+        }
+        misses += 1;
+        load(block);
+        cleanBlocks.put(block, Boolean.TRUE);
+        loadedBytes += block.bytes;
+        evict(block);
+        return block.lines;
+    }
+
+    private List<StringBuilder> modify(Block block) {
+        List<StringBuilder> lines = lines(block);
+        if (!block.dirty) {
+            block.dirty = true;
+            cleanBlocks.remove(block);
+        }
+        return lines;
+    }
+
+    private void load(Block block) {
+        long start = index.lineStart(block.firstSourceLine);
+        long end = index.lineEnd(block.firstSourceLine + block.linesSize - 1);
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        try {
+            while (bytes.hasRemaining()) {
+                if (index.getChannel().read(bytes, start + bytes.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        bytes.flip();
+        CharBuffer chars = charset.decode(bytes);
+        List<StringBuilder> lines = new ArrayList<>(block.linesSize);
+        int lineStart = 0;
+        for (int i = 0; i <= chars.limit(); ++i) {
+            if ((i == chars.limit()) || (chars.get(i) == '\n')) {
+                lines.add(new StringBuilder(i - lineStart).append(chars, lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        for (int i = 0; i < lines.size(); ++i) {
+            int sourceLine = block.firstSourceLine + i;
+            if (index.lineLength(sourceLine) != lines.get(i).length()) {
+                lineLengths.remove(index.lineLength(sourceLine));
+                lineLengths.add(lines.get(i).length());
+                index.setLineLength(sourceLine, lines.get(i).length());
+            }
+        }
+        block.lines = lines;
+        block.bytes = 2L * chars.limit() + (long) LINE_OVERHEAD * lines.size();
+    }
+
+    private void appendLines(TextSnapshot snapshot, int from, int to) {
+        int lineIndex = from;
+        while (lineIndex <= to) {
+            Block block = findBlock(lineIndex);
+            int first = foundLine;
+            int count = Math.min(to - lineIndex + 1, block.linesSize - first);
+            if (lineIndex > from) {
+                snapshot.append("\n");
+            }
+            if (block.dirty) {
+                for (int i = first; i < first + count; ++i) {
+                    if (i > first) {
+                        snapshot.append("\n");
+                    }
+                    snapshot.append(block.lines.get(i));
+                }
+            } else {
+                int sourceLine = block.firstSourceLine + first;
+                snapshot.append(index.map(index.lineStart(sourceLine), index.lineEnd(sourceLine + count - 1)), charset,
+                        index.charsSize(sourceLine, sourceLine + count - 1));
+            }
+            lineIndex += count;
+        }
+    }
+
+    private void evict(Block keep) {
+        Iterator<Block> iterator = cleanBlocks.keySet().iterator();
+        while ((loadedBytes > memoryBudget) && (iterator.hasNext())) {
+            Block block = iterator.next();
+            if (block == keep) {
+                break;
+            }
+            iterator.remove();
+            loadedBytes -= block.bytes;
+            block.lines = null;
+            evictions += 1;
+        }
+    }
+
+    private void removeLines(int from, int to) {
+        int remaining = to - from;
+        while (remaining > 0) {
+            Block block = findBlock(from);
+            int blockIndex = foundBlock;
+            int count = Math.min(remaining, block.linesSize - foundLine);
+            if ((foundLine == 0) && (count == block.linesSize) && (block.lines == null)) {
+                for (int i = 0; i < count; ++i) {
+                    lineLengths.remove(index.lineLength(block.firstSourceLine + i));
+                }
+                block.lines = new ArrayList<>();
+                block.bytes = 0;
+                block.dirty = true;
+            } else {
+                List<StringBuilder> lines = modify(block);
+                List<StringBuilder> removed = lines.subList(foundLine, foundLine + count);
+                for (StringBuilder line : removed) {
+                    resize(block, -2L * line.length() - LINE_OVERHEAD);
+                    lineLengths.remove(line.length());
+                }
+                removed.clear();
+            }
+            changeLines(blockIndex, -count);
+            remaining -= count;
+        }
+    }
+
+    private void resize(Block block, long delta) {
+        block.bytes += delta;
+        loadedBytes += delta;
+    }
+
+    private void changeLines(int blockIndex, int delta) {
+        blocks.get(blockIndex).linesSize += delta;
+        linesSize += delta;
+        for (int i = blockIndex + 1; i < blockLines.length; i += i & -i) {
+            blockLines[i] += delta;
+        }
+    }
+
+    private void splitBlock(int blockIndex) {
+        Block block = blocks.get(blockIndex);
+        List<Block> parts = new ArrayList<>();
+        for (int first = 0; first < block.lines.size(); first += BLOCK_LINES) {
+            Block part = new Block(-1, Math.min(BLOCK_LINES, block.lines.size() - first));
+            part.lines = new ArrayList<>(block.lines.subList(first, first + part.linesSize));
+            part.dirty = true;
+            for (StringBuilder line : part.lines) {
+                part.bytes += 2L * line.length() + LINE_OVERHEAD;
+            }
+            parts.add(part);
+        }
+        loadedBytes -= block.bytes;
+        for (Block part : parts) {
+            loadedBytes += part.bytes;
+        }
+        blocks.remove(blockIndex);
+        blocks.addAll(blockIndex, parts);
+        rebuildBlockLines();
+    }
+
+    private void rebuildBlockLines() {
+        blockLines = new int[blocks.size() + 1];
+        for (int i = 1; i < blockLines.length; ++i) {
+            blockLines[i] += blocks.get(i - 1).linesSize;
+            int parent = i + (i & -i);
+            if (parent < blockLines.length) {
+                blockLines[parent] += blockLines[i];
+            }
+        }
+    }
+
+    private static int indexOf(CharSequence text, int from) {
+        for (int i = from; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Block {
+        private final int firstSourceLine;
+        private int linesSize;
+        private List<StringBuilder> lines;
+        private long bytes;
+        private boolean dirty;
+
+        private Block(int firstSourceLine, int linesSize) {
+            this.firstSourceLine = firstSourceLine;
+            this.linesSize = linesSize;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.aomatveev.texteditor.model;
+
+import com.aomatveev.texteditor.primitives.IntRangeList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PieceTable implements TextStore {
+
+    private final TextBuffer original;
+    private final TextBuffer added;
+    private final Random random;
+    private final LineLengths lineLengths;
+    private Piece root;
+
+    private int cachedLineIndex;
+    private String cachedLine;
+
+    public PieceTable() {
+        this(new TextBuffer(), emptyLineLengths());
+    }
+
+    PieceTable(TextBuffer original, LineLengths lineLengths) {
+        this.original = original;
+        this.lineLengths = lineLengths;
+        added = new TextBuffer();
+        random = new Random();
+        if (original.length() > 0) {
+            root = newPiece(original, 0, original.length());
+        }
+        invalidateCache();
+    }
+
+    public int length() {
+        return length(root);
+    }
+
+    @Override
+    public int linesSize() {
+        return lineFeeds(root) + 1;
+    }
+
+    public int lineStart(int lineIndex) {
+        if (lineIndex == 0) {
+            return 0;
+        }
+        return lineFeedOffset(root, lineIndex) + 1;
+    }
+
+    public int lineEnd(int lineIndex) {
+        if (lineIndex == linesSize() - 1) {
+            return length();
+        }
+        return lineFeedOffset(root, lineIndex + 1);
+    }
+
+    @Override
+    public int lineLength(int lineIndex) {
+        return lineEnd(lineIndex) - lineStart(lineIndex);
+    }
+
+    public int offset(int lineIndex, int charIndex) {
+        return lineStart(lineIndex) + charIndex;
+    }
+
+    @Override
+    public String getLine(int lineIndex) {
+        if (lineIndex != cachedLineIndex) {
+            cachedLine = getText(lineStart(lineIndex), lineEnd(lineIndex));
+            cachedLineIndex = lineIndex;
+        }
+        return cachedLine;
+    }
+
+    public char charAt(int offset) {
+        Piece t = root;
+        while (t != null) {
+            int leftLength = length(t.left);
+            if (offset < leftLength) {
+                t = t.left;
+            } else if (offset < leftLength + t.length) {
+                return t.buffer.charAt(t.start + offset - leftLength);
+            } else {
+                offset -= leftLength + t.length;
+                t = t.right;
+            }
+        }
+        throw new IndexOutOfBoundsException(String.valueOf(offset));
+    }
+
+    public String getText(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        appendText(root, start, end, sb);
+        return sb.toString();
+    }
+
+    public void insert(int offset, CharSequence text) {
+        if (text.length() == 0) {
+            return;
+        }
+        invalidateCache();
+        int lineIndex = lineIndexAt(offset);
+        lineLengths.remove(lineLength(lineIndex));
+        int lineFeedsBefore = added.lineFeedsBefore(added.length());
+        int start = added.append(text);
+        int lineFeeds = added.lineFeedsBefore(added.length()) - lineFeedsBefore;
+        if (!extend(root, offset, start, text.length(), lineFeeds)) {
+            Piece[] parts = split(offset);
+            root = merge(merge(parts[0], newPiece(added, start, text.length())), parts[1]);
+        }
+        for (int i = lineIndex; i <= lineIndex + lineFeeds; ++i) {
+            lineLengths.add(lineLength(i));
+        }
+    }
+
+    @Override
+    public void insert(int lineIndex, int charIndex, CharSequence text) {
+        insert(offset(lineIndex, charIndex), text);
+    }
+
+    @Override
+    public void delete(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        int start = offset(startLineIndex, startCharIndex);
+        delete(start, offset(endLineIndex, endCharIndex) - start);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public int getMaxLength() {
+        return lineLengths.max();
+    }
+
+    @Override
+    public TextSnapshot snapshot(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        return snapshot(offset(startLineIndex, startCharIndex), offset(endLineIndex, endCharIndex));
+    }
+
+    public TextSnapshot snapshot(int start, int end) {
+        List<TextBuffer> buffers = new ArrayList<>();
+        IntRangeList ranges = new IntRangeList();
+        collectPieces(root, start, end, buffers, ranges);
+        return new TextSnapshot(buffers, ranges);
+    }
+
+    public void delete(int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+        invalidateCache();
+        int startLine = lineIndexAt(offset);
+        int endLine = lineIndexAt(offset + length);
+        for (int i = startLine; i <= endLine; ++i) {
+            lineLengths.remove(lineLength(i));
+        }
+        Piece[] head = split(offset);
+        root = head[1];
+        Piece[] tail = split(length);
+        root = merge(head[0], tail[1]);
+        lineLengths.add(lineLength(startLine));
+    }
+
+    @Override
+    public String toString() {
+        return getText(0, length());
+    }
+
+    private void invalidateCache() {
+        cachedLineIndex = -1;
+        cachedLine = null;
+    }
+
+    private Piece newPiece(TextBuffer buffer, int start, int length) {
+        Piece piece = new Piece(buffer, start, length, random.nextInt());
+        update(piece);
+        return piece;
+    }
+
+    private int lineFeedOffset(Piece t, int lineFeedNumber) {
+        int offset = 0;
+        while (t != null) {
+            int leftLineFeeds = lineFeeds(t.left);
+            if (lineFeedNumber <= leftLineFeeds) {
+                t = t.left;
+                continue;
+            }
+            lineFeedNumber -= leftLineFeeds;
+            int leftLength = length(t.left);
+            if (lineFeedNumber <= t.lineFeeds) {
+                int first = t.buffer.lineFeedsBefore(t.start);
+                return offset + leftLength + t.buffer.lineFeedPosition(first + lineFeedNumber - 1) - t.start;
+            }
+            lineFeedNumber -= t.lineFeeds;
+            offset += leftLength + t.length;
+            t = t.right;
+        }
+        throw new IndexOutOfBoundsException(String.valueOf(lineFeedNumber));
+    }
+
+    private int lineIndexAt(int offset) {
+        int lineIndex = 0;
+        Piece t = root;
+        while (t != null) {
+            int leftLength = length(t.left);
+            if (offset < leftLength) {
+                t = t.left;
+                continue;
+            }
+            lineIndex += lineFeeds(t.left);
+            if (offset <= leftLength + t.length) {
+                return lineIndex + countLineFeeds(t.buffer, t.start, offset - leftLength);
+            }
+            lineIndex += t.lineFeeds;
+            offset -= leftLength + t.length;
+            t = t.right;
+        }
+        return lineIndex;
+    }
+
+    private void appendText(Piece t, int start, int end, StringBuilder sb) {
+        if ((t == null) || (start >= end)) {
+            return;
+        }
+        int leftLength = length(t.left);
+        if (start < leftLength) {
+            appendText(t.left, start, Math.min(end, leftLength), sb);
+        }
+        int from = Math.max(start - leftLength, 0);
+        int to = Math.min(end - leftLength, t.length);
+        if (from < to) {
+            t.buffer.appendTo(sb, t.start + from, t.start + to);
+        }
+        int skipped = leftLength + t.length;
+        if (end > skipped) {
+            appendText(t.right, Math.max(start - skipped, 0), end - skipped, sb);
+        }
+    }
+
+    private void collectPieces(Piece t, int start, int end, List<TextBuffer> buffers, IntRangeList ranges) {
+        if ((t == null) || (start >= end)) {
+            return;
+        }
+        int leftLength = length(t.left);
+        if (start < leftLength) {
+            collectPieces(t.left, start, Math.min(end, leftLength), buffers, ranges);
+        }
+        int from = Math.max(start - leftLength, 0);
+        int to = Math.min(end - leftLength, t.length);
+        if (from < to) {
+            buffers.add(t.buffer);
+            ranges.add(t.start + from, t.start + to);
+        }
+        int skipped = leftLength + t.length;
+        if (end > skipped) {
+            collectPieces(t.right, Math.max(start - skipped, 0), end - skipped, buffers, ranges);
+        }
+    }
+
+    private boolean extend(Piece t, int offset, int start, int length, int lineFeeds) {
+        if (t == null) {
+            return false;
+        }
+        int leftLength = length(t.left);
+        boolean extended;
+        if (offset <= leftLength) {
+            extended = extend(t.left, offset, start, length, lineFeeds);
+        } else if (offset == leftLength + t.length) {
+            extended = (t.buffer == added) && (t.start + t.length == start);
+            if (extended) {
+                t.length += length;
+                t.lineFeeds += lineFeeds;
+            }
+        } else if (offset > leftLength + t.length) {
+            extended = extend(t.right, offset - leftLength - t.length, start, length, lineFeeds);
+        } else {
+            extended = false;
+        }
+        if (extended) {
+            update(t);
+        }
+        return extended;
+    }
+
+    private Piece[] split(int offset) {
+        Piece tail = detachTail(root, offset);
+        Piece[] parts = split(root, offset);
+        parts[1] = merge(tail, parts[1]);
+        return parts;
+    }
+
+    private Piece[] split(Piece t, int offset) {
+        if (t == null) {
+            return new Piece[]{null, null};
+        }
+        int leftLength = length(t.left);
+        if (offset <= leftLength) {
+            Piece[] parts = split(t.left, offset);
+            t.left = parts[1];
+            update(t);
+            return new Piece[]{parts[0], t};
+        } else {
+            Piece[] parts = split(t.right, offset - leftLength - t.length);
+            t.right = parts[0];
+            update(t);
+            return new Piece[]{t, parts[1]};
+        }
+    }
+
+    private Piece detachTail(Piece t, int offset) {
+        if (t == null) {
+            return null;
+        }
+        int leftLength = length(t.left);
+        Piece tail;
+        if (offset <= leftLength) {
+            tail = detachTail(t.left, offset);
+        } else if (offset >= leftLength + t.length) {
+            tail = detachTail(t.right, offset - leftLength - t.length);
+        } else {
+            int cut = offset - leftLength;
+            tail = newPiece(t.buffer, t.start + cut, t.length - cut);
+            t.length = cut;
+            t.lineFeeds = countLineFeeds(t.buffer, t.start, cut);
+        }
+        if (tail != null) {
+            update(t);
+        }
+        return tail;
+    }
+
+    private Piece merge(Piece a, Piece b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        } else {
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
+        }
+    }
+
+    private static LineLengths emptyLineLengths() {
+        LineLengths lineLengths = new LineLengths();
+        lineLengths.add(0);
+        return lineLengths;
+    }
+
+    private static int countLineFeeds(TextBuffer buffer, int start, int length) {
+        return buffer.lineFeedsBefore(start + length) - buffer.lineFeedsBefore(start);
+    }
+
+    private static void update(Piece t) {
+        t.totalLength = length(t.left) + t.length + length(t.right);
+        t.totalLineFeeds = lineFeeds(t.left) + t.lineFeeds + lineFeeds(t.right);
+    }
+
+    private static int length(Piece t) {
+        return t == null ? 0 : t.totalLength;
+    }
+
+    private static int lineFeeds(Piece t) {
+        return t == null ? 0 : t.totalLineFeeds;
+    }
+
+    private static class Piece {
+        private final TextBuffer buffer;
+        private final int start;
+        private final int priority;
+        private int length;
+        private int lineFeeds;
+        private int totalLength;
+        private int totalLineFeeds;
+        private Piece left;
+        private Piece right;
+
+        private Piece(TextBuffer buffer, int start, int length, int priority) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.priority = priority;
+            lineFeeds = countLineFeeds(buffer, start, length);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.aomatveev.texteditor.model;
 
 import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.primitives.IntRangeList;
 import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.primitives.Range;
 import com.aomatveev.texteditor.primitives.SimpleCaret;
 import com.aomatveev.texteditor.syntax.AbstractSyntax;
+import com.aomatveev.texteditor.syntax.HighlightingService;
+import com.aomatveev.texteditor.syntax.LineTokens;
 import com.aomatveev.texteditor.syntax.NoneSyntax;
 import com.aomatveev.texteditor.utilities.Utilities;
 
@@ -11,23 +15,35 @@ import com.aomatveev.texteditor.utilities.Utilities;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
-import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 public class SimpleDocument {
     private SimpleTextComponent viewModel;
-    private List<StringBuilder> lines;
+    private static final LineInfo READ_ONLY_LINE_INFO = new LineInfo();
+    private static final int PASTE_CHUNK = 1 << 16;
+
+    private TextStore store;
+    private LineTree lineInfos;
+    private int foundRow;
 
     private SimpleCaret currentCaret;
     private SimpleCaret startSelectCaret;
     private AbstractSyntax syntax;
-    private int maxLength;
+    private HighlightingService highlightingService;
+    private long version;
     private boolean isSelected;
     private boolean insertMode;
+    private int editDepth;
+    private int dirtyStartLine;
+    private int dirtyEndLine;
 
 
     public SimpleDocument(SimpleTextComponent viewModel) {
@@ -36,28 +52,135 @@ public class SimpleDocument {
     }
 
     public void newDocument() {
-        maxLength = 0;
         init();
         setSyntax(new NoneSyntax());
     }
 
 
-    public StringBuilder getLine(int index) {
-        if (index >= linesSize()) return new StringBuilder("");
-        return lines.get(index);
+    public CharSequence getLine(int index) {
+        if (index >= linesSize()) return "";
+        return store.getLine(index);
     }
 
     public int lineLength(int lineIndex) {
         if (lineIndex >= linesSize()) return 0;
-        return lines.get(lineIndex).length();
+        return store.lineLength(lineIndex);
     }
 
     public int linesSize() {
-        return lines.size();
+        return store.linesSize();
+    }
+
+    public LineInfo getLineInfo(int lineIndex) {
+        if (store.isReadOnly()) {
+            return READ_ONLY_LINE_INFO;
+        }
+        LineInfo info = lineInfos.get(lineIndex);
+        if (info == null) {
+            info = new LineInfo();
+            lineInfos.set(lineIndex, info);
+        }
+        return info;
+    }
+
+    public void resetLineInfos() {
+        if (!isReadOnly()) {
+            lineInfos.forEach(LineInfo::resetSyntax);
+            lineInfos.refresh(0, linesSize() - 1);
+        }
+    }
+
+    public void refreshLineInfos(int startLine, int endLine) {
+        if (!isReadOnly()) {
+            lineInfos.refresh(startLine, endLine);
+        }
+    }
+
+    public boolean hasBracketIndex() {
+        return (!isReadOnly()) && (syntax.isIndexed()) && (!lineInfos.hasUnlexedLines())
+                && (syntax.isLineAnalysed(linesSize() - 1));
+    }
+
+    public boolean isLineAnalysed(int lineIndex) {
+        return isReadOnly() || syntax.isLineAnalysed(lineIndex);
+    }
+
+    public void linesAnalysed(int startLine, int endLine) {
+        viewModel.updateView(startLine, endLine);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public HighlightingService getHighlightingService() {
+        return highlightingService;
+    }
+
+    public void setHighlightingService(HighlightingService highlightingService) {
+        this.highlightingService = highlightingService;
+    }
+
+    public int findCloseBracketLine(int fromLine, int type, int balance) {
+        return lineInfos.findCloseBracketLine(fromLine, type, balance);
+    }
+
+    public int findOpenBracketLine(int fromLine, int type, int balance) {
+        return lineInfos.findOpenBracketLine(fromLine, type, balance);
+    }
+
+    public int getFoundBracketBalance() {
+        return lineInfos.getFoundBalance();
+    }
+
+    public void setLineRows(int lineIndex, int rows) {
+        LineInfo info = getLineInfo(lineIndex);
+        if ((!isReadOnly()) && (info.rows != rows)) {
+            info.rows = rows;
+            lineInfos.refresh(lineIndex, lineIndex);
+        }
+    }
+
+    public int getLineRows(int lineIndex) {
+        return isReadOnly() ? 1 : getLineInfo(lineIndex).rows;
+    }
+
+    public int getRowsSize() {
+        return isReadOnly() ? linesSize() : lineInfos.rowsSize();
+    }
+
+    public int getLineRow(int lineIndex) {
+        return isReadOnly() ? lineIndex : lineInfos.rowOf(lineIndex);
+    }
+
+    public int findLineAtRow(int row) {
+        if (isReadOnly()) {
+            foundRow = row;
+            return row;
+        }
+        int lineIndex = lineInfos.findLineAtRow(row);
+        foundRow = lineInfos.getFoundRow();
+        return lineIndex;
+    }
+
+    public int getFoundRow() {
+        return foundRow;
+    }
+
+    public boolean isReadOnly() {
+        return store.isReadOnly();
+    }
+
+    public boolean isPaged() {
+        return store instanceof PagedTextStore;
     }
 
     public int getMaxLength() {
-        return maxLength;
+        return store.getMaxLength();
+    }
+
+    public AbstractSyntax getSyntax() {
+        return syntax;
     }
 
     public void setSyntax(AbstractSyntax syntax) {
@@ -67,7 +190,15 @@ public class SimpleDocument {
 
     public void setInsertMode() {
         insertMode ^= true;
-        viewModel.updateView();
+        viewModel.updateView(-1, -1);
+    }
+
+    public int getSelectionAnchorLine() {
+        return isSelected ? startSelectCaret.lineIndex : -1;
+    }
+
+    public int getMatchingBracketLine() {
+        return isReadOnly() ? -1 : syntax.getMatchingBracketLine();
     }
 
     public boolean isSelected() {
@@ -78,36 +209,112 @@ public class SimpleDocument {
         return insertMode;
     }
 
+    public void beginEdit() {
+        if ((editDepth == 0) && (!isReadOnly())) {
+            syntax.resetMatchingBracket();
+            dirtyStartLine = -1;
+            dirtyEndLine = -1;
+        }
+        editDepth += 1;
+    }
+
+    public void endEdit() {
+        editDepth -= 1;
+        if (editDepth > 0) {
+            return;
+        }
+        if (isReadOnly()) {
+            return;
+        }
+        int startLine = -1;
+        int endLine = -1;
+        if (dirtyStartLine != -1) {
+            endLine = Math.min(dirtyEndLine, linesSize() - 1);
+            startLine = Math.min(dirtyStartLine, endLine);
+            touchLines(startLine, endLine);
+            endLine = syntax.checkIfComment(startLine, endLine);
+        }
+        syntax.checkIfBracket();
+        viewModel.updateView(startLine, endLine);
+    }
+
+    public boolean isInEdit() {
+        return editDepth > 0;
+    }
+
     public void insertText(char c) {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
+        if (isReadOnly()) {
+            return;
+        }
+        if (c == '\n') {
+            insertNewLine();
+            return;
+        }
+        startEdit();
+        int lineIndex = currentCaret.lineIndex;
+        int charIndex = currentCaret.charIndex;
         if ((insertMode) && (!currentCaret.atEndLine(this))) {
-            lines.get(currentCaret.lineIndex).setCharAt(currentCaret.charIndex, c);
-        } else {
-            lines.get(currentCaret.lineIndex).insert(currentCaret.charIndex, c);
+            deleteFromStore(lineIndex, charIndex, lineIndex, charIndex + 1);
         }
+        insertIntoStore(lineIndex, charIndex, String.valueOf(c));
 
-        updateMaxLength();
-        syntax.checkIfComment();
         currentCaret.updateAfterInsertChar();
-        syntax.checkIfBracket();
-        viewModel.updateView();
+        finishEdit(currentCaret.lineIndex, currentCaret.lineIndex);
     }
 
     public void insertNewLine() {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
-        StringBuilder rest = new StringBuilder("");
-        rest.append(getLine(currentCaret.lineIndex).substring(currentCaret.charIndex));
-        getLine(currentCaret.lineIndex).delete(currentCaret.charIndex, lineLength(currentCaret.lineIndex));
-        lines.add(currentCaret.lineIndex + 1, rest);
-        syntax.getMatchingBracket().add(currentCaret.lineIndex + 1, -1);
-        syntax.getLineCommentIndex().add(currentCaret.lineIndex + 1, -1);
-        syntax.getTextCommentIndex().add(currentCaret.lineIndex + 1, new ArrayList<>());
-        updateMaxLength();
-        syntax.checkIfComment();
+        if (isReadOnly()) {
+            return;
+        }
+        startEdit();
+        insertIntoStore(currentCaret.lineIndex, currentCaret.charIndex, "\n");
+        insertLineInfo(currentCaret.lineIndex + 1);
         currentCaret.updateAfterInsertNewline();
-        syntax.checkIfBracket();
+        finishEdit(currentCaret.lineIndex - 1, currentCaret.lineIndex);
+    }
+
+    public void load(DocumentContent content) {
+        load(content, syntax);
+    }
+
+    public void load(DocumentContent content, AbstractSyntax syntax) {
+        this.syntax = syntax;
+        replaceStore(content.createStore());
+        lineInfos = content.createLineInfos();
+        isSelected = false;
+        startSelectCaret = null;
+        initCaret();
+        syntax.setDocument(this);
+        viewModel.updateView();
+    }
+
+    public void view(MappedTextStore mappedStore) {
+        view(mappedStore, syntax);
+    }
+
+    public void view(MappedTextStore mappedStore, AbstractSyntax syntax) {
+        this.syntax = syntax;
+        replaceStore(mappedStore);
+        lineInfos = null;
+        isSelected = false;
+        startSelectCaret = null;
+        currentCaret = new SimpleCaret(0, 0);
+        syntax.setDocument(this);
+        viewModel.updateView();
+    }
+
+    public void page(PagedTextStore pagedStore) {
+        page(pagedStore, syntax);
+    }
+
+    public void page(PagedTextStore pagedStore, AbstractSyntax syntax) {
+        this.syntax = syntax;
+        replaceStore(pagedStore);
+        lineInfos = new LineTree(pagedStore.linesSize());
+        isSelected = false;
+        startSelectCaret = null;
+        currentCaret = new SimpleCaret(0, 0);
+        syntax.setDocument(this);
         viewModel.updateView();
     }
 
@@ -117,51 +324,60 @@ public class SimpleDocument {
     }
 
     public void backspaceChar() {
-        if (!currentCaret.atBeginningFile()) {
-            syntax.resetMatchingBracket();
+        if ((!currentCaret.atBeginningFile()) && (!isReadOnly())) {
+            startEdit();
             if (currentCaret.atBeginningLine()) {
                 backspaceLine();
             } else {
-                lines.get(currentCaret.lineIndex).deleteCharAt(currentCaret.charIndex - 1);
-                updateMaxLength();
+                deleteFromStore(currentCaret.lineIndex, currentCaret.charIndex - 1,
+                        currentCaret.lineIndex, currentCaret.charIndex);
                 currentCaret.updateAfterDeleteChar();
             }
-            syntax.resetComment();
-            syntax.checkIfBracket();
-            syntax.checkIfComment();
-            viewModel.updateView();
+            finishEdit(currentCaret.lineIndex, currentCaret.lineIndex);
         }
     }
 
     public void deleteChar() {
-        if (!currentCaret.atEndFile(this)) {
-            syntax.resetMatchingBracket();
+        if ((!currentCaret.atEndFile(this)) && (!isReadOnly())) {
+            startEdit();
             if (currentCaret.atEndLine(this)) {
                 currentCaret.moveToNextLine(this);
                 backspaceLine();
             } else {
-                lines.get(currentCaret.lineIndex).deleteCharAt(currentCaret.charIndex);
-                updateMaxLength();
+                deleteFromStore(currentCaret.lineIndex, currentCaret.charIndex,
+                        currentCaret.lineIndex, currentCaret.charIndex + 1);
             }
-            syntax.resetComment();
-            syntax.checkIfBracket();
-            syntax.checkIfComment();
-            viewModel.updateView();
+            finishEdit(currentCaret.lineIndex, currentCaret.lineIndex);
         }
     }
 
     public void paste() {
-        if (isSelected) {
-            cut();
+        if (isReadOnly()) {
+            return;
         }
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
+        beginEdit();
         try {
-            String text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
-            insertText(text);
-            viewModel.updateView();
+            if (isSelected) {
+                cut();
+            }
+            Transferable contents = Toolkit.getDefaultToolkit().getSystemClipboard().getContents(null);
+            if (contents == null) {
+                return;
+            }
+            if (contents.isDataFlavorSupported(SnapshotSelection.READER_FLAVOR)) {
+                insertText((Reader) contents.getTransferData(SnapshotSelection.READER_FLAVOR));
+            } else {
+                String text = (String) contents.getTransferData(DataFlavor.stringFlavor);
+                if (text.length() > PASTE_CHUNK) {
+                    insertText(new StringReader(text));
+                } else {
+                    insertText(text);
+                }
+            }
         } catch (UnsupportedFlavorException | IOException e) {
             System.out.println(e.getMessage());
+        } finally {
+            endEdit();
         }
     }
 
@@ -169,31 +385,23 @@ public class SimpleDocument {
         if (!isSelected) {
             return;
         }
-        String text = getSelectedText();
-        StringSelection stringSelection = new StringSelection(text);
         Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-        clipboard.setContents(stringSelection, null);
+        clipboard.setContents(new SnapshotSelection(getSelectedSnapshot()), null);
     }
 
     public void cut() {
-        if (!isSelected) {
+        if ((!isSelected) || (isReadOnly())) {
             return;
         }
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
+        startEdit();
         Pair<SimpleCaret, SimpleCaret> bounds = findSelectedBounds();
         SimpleCaret first = bounds.getFirst();
         SimpleCaret second = bounds.getSecond();
-        while (first.lineIndex != second.lineIndex) {
-            removeUntilCaret(second);
-        }
-        lines.get(first.lineIndex).delete(first.charIndex, second.charIndex);
+        deleteFromStore(first.lineIndex, first.charIndex, second.lineIndex, second.charIndex);
+        removeLineInfos(first.lineIndex + 1, second.lineIndex + 1);
         currentCaret.setPosition(first);
-        updateMaxLength();
         cancelSelect();
-        syntax.checkIfComment();
-        syntax.checkIfBracket();
-        viewModel.updateView();
+        finishEdit(first.lineIndex, first.lineIndex);
     }
 
     public void selectAll() {
@@ -216,29 +424,28 @@ public class SimpleDocument {
         return currentCaret;
     }
 
-    public Pair<Integer, Integer> getSelectedBounds(int index) {
-        Pair<SimpleCaret, SimpleCaret> bounds = findSelectedBounds();
-        SimpleCaret first = bounds.getFirst();
-        SimpleCaret second = bounds.getSecond();
+    public long getSelectedBounds(int index) {
+        boolean backward = currentCaret.compareTo(startSelectCaret) < 0;
+        SimpleCaret first = backward ? currentCaret : startSelectCaret;
+        SimpleCaret second = backward ? startSelectCaret : currentCaret;
         if ((index < first.lineIndex) || (index > second.lineIndex)) {
-            return null;
+            return Range.NONE;
         }
         if ((index > first.lineIndex) && (index < second.lineIndex)) {
-            return new Pair<>(0, lineLength(index));
+            return Range.of(0, lineLength(index));
         }
         if (first.lineIndex == second.lineIndex) {
-            return new Pair<>(first.charIndex, second.charIndex);
+            return Range.of(first.charIndex, second.charIndex);
         }
         if (index == first.lineIndex) {
-            return new Pair<>(first.charIndex, lineLength(index));
+            return Range.of(first.charIndex, lineLength(index));
         } else {
-            return new Pair<>(0, second.charIndex);
+            return Range.of(0, second.charIndex);
         }
     }
 
     public void moveCaret(KeyEvent e) {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
+        resetCaretSyntax();
         if (e.isControlDown()) {
             if (e.getKeyCode() == KeyEvent.VK_LEFT) {
                 currentCaret.moveToPrevWord(this);
@@ -246,7 +453,7 @@ public class SimpleDocument {
             if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
                 currentCaret.moveToNextWord(this);
             }
-            viewModel.updateView();
+            viewModel.updateView(-1, -1);
             return;
         }
         if (e.getKeyCode() == KeyEvent.VK_LEFT) {
@@ -267,30 +474,29 @@ public class SimpleDocument {
         if (e.getKeyCode() == KeyEvent.VK_HOME) {
             currentCaret.moveStartLine();
         }
-        syntax.checkIfBracket();
-        syntax.checkIfComment();
-        viewModel.updateView();
+        checkCaretSyntax();
+        viewModel.updateView(-1, -1);
     }
 
     public void moveCaret(int lineIndex, int charIndex) {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
+        resetCaretSyntax();
+        int changedLine = -1;
         if (lineIndex == linesSize()) {
-            if (lineLength(lineIndex - 1) > 0) {
-                lines.add(new StringBuilder(""));
-                syntax.addMatchingBracket();
-                syntax.addLineCommentIndex();
-                syntax.addTextCommentIndex();
+            if ((lineLength(lineIndex - 1) > 0) && (!isReadOnly())) {
+                insertIntoStore(lineIndex - 1, lineLength(lineIndex - 1), "\n");
+                lineInfos.add(new LineInfo());
+                version += 1;
+                syntax.lineInserted(lineIndex);
+                syntax.checkIfComment(lineIndex, lineIndex);
+                changedLine = lineIndex - 1;
             } else {
                 lineIndex -= 1;
             }
         }
         charIndex = Math.min(lineLength(lineIndex), charIndex);
-        updateMaxLength();
         currentCaret.setPosition(lineIndex, charIndex);
-        syntax.checkIfBracket();
-        syntax.checkIfComment();
-        viewModel.updateView();
+        checkCaretSyntax();
+        viewModel.updateView(changedLine, changedLine);
     }
 
     public void moveSelectedCaret(KeyEvent e) {
@@ -316,94 +522,60 @@ public class SimpleDocument {
         startSelectCaret = null;
     }
 
-    public List<Pair<Integer, Integer>> getIdentifiersBounds(int lineIndex) {
-        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
-        StringBuilder text = getLine(lineIndex);
-        boolean start = false;
-        int startIndex = 0;
+    public LineTokens getTokens(int lineIndex) {
+        return syntax.tokenize(lineIndex);
+    }
 
-        for (int i = 0; i < text.length(); ++i) {
-            if (syntax.isValidIdentifier(start, text.charAt(i))) {
-                if (!start) {
-                    startIndex = i;
-                }
-                start = true;
-            } else {
-                if ((start) && (startIndex < i)) {
-                    bounds.add(new Pair<>(startIndex, i));
-                }
-                start = false;
-            }
-        }
-        if (start) {
-            bounds.add(new Pair<>(startIndex, text.length()));
-        }
-        return bounds;
+    public int[] getCheckpoints(int lineIndex) {
+        return syntax.checkpoints(lineIndex);
     }
 
-    public List<Pair<Integer, Integer>> getKeywordsBounds(int lineIndex) {
-        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
-        StringBuilder text = getLine(lineIndex);
-        List<String> keywords = syntax.getKeywords();
-        String specialText = "! " + text;
-        String[] words = specialText.split(" ");
-        int start = 0;
+    public LineTokens getTokens(int lineIndex, int from, int to, int[] checkpoints) {
+        return syntax.tokenize(lineIndex, from, to, checkpoints);
+    }
 
-        for (int i = 1; i < words.length; ++i) {
-            if (keywords.contains(words[i])) {
-                bounds.add(new Pair<>(start, start + words[i].length()));
-            }
-            start += words[i].length() + 1;
-        }
-        return bounds;
+    public IntRangeList getIdentifiersBounds(int lineIndex) {
+        return getTokensBounds(lineIndex, LineTokens.IDENTIFIER, LineTokens.KEYWORD);
     }
 
-    public List<Pair<Integer, Integer>> getLiteralsBounds(int lineIndex) {
-        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
-        StringBuilder text = getLine(lineIndex);
-        boolean start = false;
-        int startIndex = 0;
+    public IntRangeList getKeywordsBounds(int lineIndex) {
+        return getTokensBounds(lineIndex, LineTokens.KEYWORD, LineTokens.KEYWORD);
+    }
 
-        for (int i = 0; i < text.length(); ++i) {
-            if (text.charAt(i) == '"') {
-                if (start) {
-                    bounds.add(new Pair<>(startIndex, i + 1));
-                } else {
-                    startIndex = i;
-                }
-                start ^= true;
-            }
-        }
-        if (start) {
-            bounds.add(new Pair<>(startIndex, text.length()));
-        }
+    public IntRangeList getLiteralsBounds(int lineIndex) {
+        return getTokensBounds(lineIndex, LineTokens.LITERAL, LineTokens.LITERAL);
+    }
+
+    public IntRangeList getBracketsBounds(int lineIndex) {
+        IntRangeList bounds = new IntRangeList();
+        getBracketsBounds(lineIndex, bounds);
         return bounds;
     }
 
-    public List<Pair<Integer, Integer>> getBracketsBounds(int lineIndex) {
-        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
-        Integer index = syntax.getMatchingBracket().get(lineIndex);
+    public void getBracketsBounds(int lineIndex, IntRangeList bounds) {
+        bounds.clear();
+        int index = getLineInfo(lineIndex).matchingBracket;
 
         if (index != -1) {
-            bounds.add(new Pair<>(index, index + 1));
+            bounds.add(index, index + 1);
         }
         if ((Utilities.isBracket(currentCaret.getSymbol(this))) && (currentCaret.lineIndex == lineIndex)) {
-            bounds.add(new Pair<>(currentCaret.charIndex, currentCaret.charIndex + 1));
+            bounds.add(currentCaret.charIndex, currentCaret.charIndex + 1);
         }
-        return bounds;
     }
 
-    public List<Pair<Integer, Integer>> getCommentsBounds(int lineIndex) {
-        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
-        StringBuilder text = getLine(lineIndex);
-        Integer index = syntax.getLineCommentIndex().get(lineIndex);
+    public IntRangeList getCommentsBounds(int lineIndex) {
+        IntRangeList bounds = new IntRangeList();
+        CharSequence text = getLine(lineIndex);
+        LineInfo info = getLineInfo(lineIndex);
+        int index = info.lineCommentIndex;
         if (index != -1) {
-            bounds.add(new Pair<>(index, text.length()));
+            bounds.add(index, text.length());
         }
-        List<Pair<Integer, Integer>> pairs = syntax.getTextCommentIndex().get(lineIndex);
-        for (Pair<Integer, Integer> pair : pairs) {
-            if (pair.getFirst() < pair.getSecond()) {
-                bounds.add(pair);
+        int[] comments = info.textComments;
+        for (int i = 0; i < comments.length; i += 2) {
+            if (comments[i] < comments[i + 1]) {
+                bounds.add(comments[i], comments[i + 1]);
             }
         }
         return bounds;
@@ -411,18 +583,38 @@ public class SimpleDocument {
 
     @Override
     public String toString() {
-        StringBuilder ans = new StringBuilder();
-        for (int i = 0; i < linesSize(); ++i) {
-            ans.append(lines.get(i));
-            if (i < linesSize() - 1) {
-                ans.append('\n');
+        return store.toString();
+    }
+
+    public TextSnapshot getSnapshot() {
+        return store.snapshot();
+    }
+
+    public TextSnapshot getSnapshot(int startLine, int endLine) {
+        return store.snapshot(startLine, 0, endLine, lineLength(endLine));
+    }
+
+    protected void insertText(Reader reader) throws IOException {
+        if (isReadOnly()) {
+            return;
+        }
+        beginEdit();
+        try {
+            char[] buffer = new char[PASTE_CHUNK];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                insertChunk(CharBuffer.wrap(buffer, 0, count));
             }
+        } finally {
+            endEdit();
         }
-
-        return ans.toString();
     }
 
     protected void insertText(String text) {
+        if (isReadOnly()) {
+            return;
+        }
+        beginEdit();
         String[] parts = text.split("\n");
         for (int i = 0; i < parts.length; ++i) {
             insertLine(parts[i]);
@@ -435,7 +627,18 @@ public class SimpleDocument {
             insertNewLine();
             ind--;
         }
-        viewModel.updateView();
+        endEdit();
+    }
+
+    private IntRangeList getTokensBounds(int lineIndex, int kind, int otherKind) {
+        IntRangeList bounds = new IntRangeList();
+        LineTokens tokens = getTokens(lineIndex);
+        for (int i = 0; i < tokens.size(); ++i) {
+            if ((tokens.kind(i) == kind) || (tokens.kind(i) == otherKind)) {
+                bounds.add(tokens.start(i), tokens.end(i));
+            }
+        }
+        return bounds;
     }
 
     private void init() {
@@ -447,8 +650,9 @@ public class SimpleDocument {
     }
 
     private void initLines() {
-        lines = new ArrayList<>();
-        lines.add(new StringBuilder(""));
+        replaceStore(new PieceTable());
+        lineInfos = new LineTree();
+        lineInfos.add(new LineInfo());
     }
 
     private void initCaret() {
@@ -468,58 +672,150 @@ public class SimpleDocument {
         }
     }
 
-    private void removeUntilCaret(SimpleCaret caret) {
-        int newCharIndex = lineLength(caret.lineIndex - 1);
-        StringBuilder rest = new StringBuilder(getLine(caret.lineIndex).substring(caret.charIndex));
-        lines.get(caret.lineIndex - 1).append(rest);
-        lines.remove(caret.lineIndex);
-        syntax.removeMatchingBracket(caret.lineIndex);
-        syntax.removeLineCommentIndex(caret.lineIndex);
-        syntax.removeTextCommentIndex(caret.lineIndex);
-        caret.setPosition(caret.lineIndex - 1, newCharIndex);
-    }
-
-    private String getSelectedText() {
-        StringBuilder res = new StringBuilder();
+    private TextSnapshot getSelectedSnapshot() {
         Pair<SimpleCaret, SimpleCaret> bounds = findSelectedBounds();
         SimpleCaret first = bounds.getFirst();
         SimpleCaret second = bounds.getSecond();
-        while (first.lineIndex != second.lineIndex) {
-            res.append(lines.get(first.lineIndex).substring(first.charIndex)).append("\n");
-            first.lineIndex += 1;
-            first.charIndex = 0;
+        return store.snapshot(first.lineIndex, first.charIndex, second.lineIndex, second.charIndex);
+    }
+
+    private void insertChunk(CharSequence text) {
+        startEdit();
+        int lineIndex = currentCaret.lineIndex;
+        int charIndex = currentCaret.charIndex;
+        int newLines = 0;
+        int lastLineStart = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                newLines += 1;
+                lastLineStart = i + 1;
+            }
+        }
+        insertIntoStore(lineIndex, charIndex, text);
+        insertLineInfos(lineIndex + 1, newLines);
+        if (newLines == 0) {
+            currentCaret.setPosition(lineIndex, charIndex + text.length());
+        } else {
+            currentCaret.setPosition(lineIndex + newLines, text.length() - lastLineStart);
         }
-        res.append(lines.get(first.lineIndex).substring(first.charIndex, second.charIndex));
-        return res.toString();
+        finishEdit(lineIndex, lineIndex + newLines);
     }
 
     private void insertLine(String text) {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
-        lines.get(currentCaret.lineIndex).insert(currentCaret.charIndex, text);
-        updateMaxLength();
-        syntax.checkIfComment();
+        startEdit();
+        insertIntoStore(currentCaret.lineIndex, currentCaret.charIndex, text);
         currentCaret.updateAfterInsertText(text);
-        syntax.checkIfBracket();
-        viewModel.updateView();
+        finishEdit(currentCaret.lineIndex, currentCaret.lineIndex);
     }
 
     private void backspaceLine() {
-        syntax.resetMatchingBracket();
-        syntax.resetComment();
-        StringBuilder line = lines.get(currentCaret.lineIndex);
         int lineLength = lineLength(currentCaret.lineIndex - 1);
-        lines.get(currentCaret.lineIndex - 1).append(line);
-        lines.remove(currentCaret.lineIndex);
-        syntax.removeMatchingBracket(currentCaret.lineIndex);
-        syntax.removeLineCommentIndex(currentCaret.lineIndex);
-        syntax.removeTextCommentIndex(currentCaret.lineIndex);
+        deleteFromStore(currentCaret.lineIndex - 1, lineLength, currentCaret.lineIndex, 0);
+        removeLineInfo(currentCaret.lineIndex);
         currentCaret.updateAfterDeleteLine(lineLength);
-        updateMaxLength();
     }
 
-    private void updateMaxLength() {
-        maxLength = Math.max(maxLength, lineLength(getCaretLineIndex()));
+    private void startEdit() {
+        if ((editDepth == 0) && (!isReadOnly())) {
+            syntax.resetMatchingBracket();
+        }
+    }
+
+    private void finishEdit(int startLine, int endLine) {
+        if (editDepth > 0) {
+            if ((dirtyStartLine == -1) || (startLine < dirtyStartLine)) {
+                dirtyStartLine = startLine;
+            }
+            dirtyEndLine = Math.max(dirtyEndLine, endLine);
+            return;
+        }
+        touchLines(startLine, endLine);
+        endLine = syntax.checkIfComment(startLine, endLine);
+        syntax.checkIfBracket();
+        viewModel.updateView(startLine, endLine);
+    }
+
+    private void touchLines(int startLine, int endLine) {
+        version += 1;
+        lineInfos.forEach(startLine, endLine, info -> info.version += 1);
+    }
+
+    private void insertLineInfo(int lineIndex) {
+        lineInfos.insert(lineIndex, new LineInfo());
+        version += 1;
+        syntax.lineInserted(lineIndex);
+        if ((editDepth > 0) && (dirtyStartLine != -1)) {
+            if (lineIndex <= dirtyStartLine) dirtyStartLine += 1;
+            if (lineIndex <= dirtyEndLine) dirtyEndLine += 1;
+        }
+    }
+
+    private void insertLineInfos(int lineIndex, int count) {
+        if (count == 0) {
+            return;
+        }
+        lineInfos.insertRun(lineIndex, count);
+        version += 1;
+        syntax.linesInserted(lineIndex, count);
+        if ((editDepth > 0) && (dirtyStartLine != -1)) {
+            if (lineIndex <= dirtyStartLine) dirtyStartLine += count;
+            if (lineIndex <= dirtyEndLine) dirtyEndLine += count;
+        }
+    }
+
+    private void removeLineInfo(int lineIndex) {
+        lineInfos.remove(lineIndex);
+        version += 1;
+        syntax.lineRemoved(lineIndex);
+        if ((editDepth > 0) && (dirtyStartLine != -1)) {
+            if (lineIndex < dirtyStartLine) dirtyStartLine -= 1;
+            if (lineIndex <= dirtyEndLine) dirtyEndLine = Math.max(dirtyEndLine - 1, dirtyStartLine);
+        }
+    }
+
+    private void removeLineInfos(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        lineInfos.removeRange(from, to);
+        version += 1;
+        syntax.linesRemoved(from, to);
+        if ((editDepth > 0) && (dirtyStartLine != -1)) {
+            dirtyStartLine -= Math.max(Math.min(to, dirtyStartLine) - from, 0);
+            dirtyEndLine = Math.max(dirtyEndLine - Math.max(Math.min(to, dirtyEndLine + 1) - from, 0), dirtyStartLine);
+        }
+    }
+
+    private void resetCaretSyntax() {
+        if (!isReadOnly()) {
+            syntax.resetMatchingBracket();
+        }
+    }
+
+    private void checkCaretSyntax() {
+        if (!isReadOnly()) {
+            syntax.checkIfBracket();
+        }
+    }
+
+    private void replaceStore(TextStore newStore) {
+        if (store != null) {
+            store.close();
+        }
+        store = newStore;
+        version += 1;
+    }
+
+    private void insertIntoStore(int lineIndex, int charIndex, CharSequence text) {
+        if (!isReadOnly()) {
+            store.insert(lineIndex, charIndex, text);
+        }
+    }
+
+    private void deleteFromStore(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex) {
+        if (!isReadOnly()) {
+            store.delete(startLineIndex, startCharIndex, endLineIndex, endCharIndex);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.aomatveev.texteditor.model;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+
+class SnapshotSelection implements Transferable {
+    static final DataFlavor READER_FLAVOR = new DataFlavor("text/plain;class=java.io.Reader", "Plain Text");
+    private static final DataFlavor[] FLAVORS = {DataFlavor.stringFlavor, READER_FLAVOR};
+
+    private final TextSnapshot snapshot;
+
+    SnapshotSelection(TextSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        for (DataFlavor supported : FLAVORS) {
+            if (supported.equals(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+        if (DataFlavor.stringFlavor.equals(flavor)) {
+            return snapshot.toString();
+        }
+        if (READER_FLAVOR.equals(flavor)) {
+            return snapshot.openReader();
+        }
+        throw new UnsupportedFlavorException(flavor);
+    }
+}
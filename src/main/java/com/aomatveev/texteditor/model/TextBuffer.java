@@ -0,0 +1,101 @@
+package com.aomatveev.texteditor.model;
+
+import java.util.Arrays;
+
+class TextBuffer {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private char[][] chunks;
+    private int length;
+    private int[] lineFeeds;
+    private int lineFeedsCount;
+
+    TextBuffer() {
+        chunks = new char[4][];
+        lineFeeds = new int[16];
+    }
+
+    int length() {
+        return length;
+    }
+
+    char charAt(int index) {
+        return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    int append(CharSequence text) {
+        int start = length;
+        for (int i = 0; i < text.length(); ++i) {
+            append(text.charAt(i));
+        }
+        return start;
+    }
+
+    int append(char[] buf, int offset, int count) {
+        int start = length;
+        for (int i = offset; i < offset + count; ++i) {
+            append(buf[i]);
+        }
+        return start;
+    }
+
+    void appendTo(StringBuilder sb, int start, int end) {
+        while (start < end) {
+            char[] chunk = chunks[start >>> CHUNK_BITS];
+            int from = start & CHUNK_MASK;
+            int count = Math.min(end - start, CHUNK_SIZE - from);
+            sb.append(chunk, from, count);
+            start += count;
+        }
+    }
+
+    void getChars(int start, int end, char[] dst, int dstBegin) {
+        while (start < end) {
+            char[] chunk = chunks[start >>> CHUNK_BITS];
+            int from = start & CHUNK_MASK;
+            int count = Math.min(end - start, CHUNK_SIZE - from);
+            System.arraycopy(chunk, from, dst, dstBegin, count);
+            start += count;
+            dstBegin += count;
+        }
+    }
+
+    int lineFeedsBefore(int index) {
+        int low = 0;
+        int high = lineFeedsCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineFeeds[mid] < index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int lineFeedPosition(int lineFeedIndex) {
+        return lineFeeds[lineFeedIndex];
+    }
+
+    private void append(char c) {
+        int chunkIndex = length >>> CHUNK_BITS;
+        if (chunkIndex == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunkIndex] == null) {
+            chunks[chunkIndex] = new char[CHUNK_SIZE];
+        }
+        chunks[chunkIndex][length & CHUNK_MASK] = c;
+        if (c == '\n') {
+            if (lineFeedsCount == lineFeeds.length) {
+                lineFeeds = Arrays.copyOf(lineFeeds, lineFeeds.length * 2);
+            }
+            lineFeeds[lineFeedsCount++] = length;
+        }
+        length += 1;
+    }
+}
@@ -0,0 +1,216 @@
+package com.aomatveev.texteditor.model;
+
+import com.aomatveev.texteditor.primitives.IntRangeList;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TextSnapshot {
+    private final List<Part> parts;
+    private TextBuffer copied;
+    private long length;
+
+    TextSnapshot() {
+        parts = new ArrayList<>();
+    }
+
+    TextSnapshot(List<TextBuffer> buffers, IntRangeList ranges) {
+        this();
+        for (int i = 0; i < ranges.size(); ++i) {
+            append(buffers.get(i), ranges.start(i), ranges.end(i));
+        }
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public Reader openReader() {
+        return new SnapshotReader();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Part part : parts) {
+            part.appendTo(sb);
+        }
+        return sb.toString();
+    }
+
+    void append(CharSequence text) {
+        if (copied == null) {
+            copied = new TextBuffer();
+        }
+        int start = copied.append(text);
+        append(copied, start, copied.length());
+    }
+
+    void append(TextBuffer buffer, int start, int end) {
+        if (start == end) {
+            return;
+        }
+        Part last = parts.isEmpty() ? null : parts.get(parts.size() - 1);
+        if ((last instanceof BufferPart) && (((BufferPart) last).buffer == buffer) && (((BufferPart) last).end == start)) {
+            ((BufferPart) last).end = end;
+        } else {
+            parts.add(new BufferPart(buffer, start, end));
+        }
+        length += end - start;
+    }
+
+    void append(List<ByteBuffer> bytes, Charset charset, long chars) {
+        if (bytes.isEmpty()) {
+            return;
+        }
+        parts.add(new FilePart(bytes, charset));
+        length += chars;
+    }
+
+    private abstract static class Part {
+        abstract Reader openReader();
+
+        abstract void appendTo(StringBuilder sb);
+    }
+
+    private static class BufferPart extends Part {
+        private final TextBuffer buffer;
+        private final int start;
+        private int end;
+
+        private BufferPart(TextBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        Reader openReader() {
+            return new Reader() {
+                private int position = start;
+
+                @Override
+                public int read(char[] cbuf, int off, int len) {
+                    if (position == end) {
+                        return -1;
+                    }
+                    int count = Math.min(len, end - position);
+                    buffer.getChars(position, position + count, cbuf, off);
+                    position += count;
+                    return count;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            buffer.appendTo(sb, start, end);
+        }
+    }
+
+    private static class FilePart extends Part {
+        private final List<ByteBuffer> bytes;
+        private final Charset charset;
+
+        private FilePart(List<ByteBuffer> bytes, Charset charset) {
+            this.bytes = bytes;
+            this.charset = charset;
+        }
+
+        @Override
+        Reader openReader() {
+            return Channels.newReader(new BytesChannel(bytes), charset);
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            char[] buffer = new char[8192];
+            try (Reader reader = openReader()) {
+                int count;
+                while ((count = reader.read(buffer)) != -1) {
+                    sb.append(buffer, 0, count);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class BytesChannel implements ReadableByteChannel {
+        private final List<ByteBuffer> bytes;
+        private int index;
+        private ByteBuffer current;
+
+        private BytesChannel(List<ByteBuffer> bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            while ((current == null) || (!current.hasRemaining())) {
+                if (index == bytes.size()) {
+                    return -1;
+                }
+                current = bytes.get(index++).duplicate();
+            }
+            int count = Math.min(dst.remaining(), current.remaining());
+            ByteBuffer chunk = current.duplicate();
+            chunk.limit(chunk.position() + count);
+            dst.put(chunk);
+            current.position(current.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private class SnapshotReader extends Reader {
+        private int part;
+        private Reader reader;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (part < parts.size()) {
+                if (reader == null) {
+                    reader = parts.get(part).openReader();
+                }
+                int count = reader.read(cbuf, off, len);
+                if (count > 0) {
+                    return count;
+                }
+                reader.close();
+                reader = null;
+                part += 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.aomatveev.texteditor.model;
+
+public interface TextStore {
+
+    int linesSize();
+
+    CharSequence getLine(int lineIndex);
+
+    int lineLength(int lineIndex);
+
+    void insert(int lineIndex, int charIndex, CharSequence text);
+
+    void delete(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex);
+
+    boolean isReadOnly();
+
+    int getMaxLength();
+
+    TextSnapshot snapshot(int startLineIndex, int startCharIndex, int endLineIndex, int endCharIndex);
+
+    default TextSnapshot snapshot() {
+        return snapshot(0, 0, linesSize() - 1, lineLength(linesSize() - 1));
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,71 @@
+package com.aomatveev.texteditor.primitives;
+
+import java.util.Arrays;
+
+public class IntRangeList {
+    private int[] bounds;
+    private int size;
+
+    public IntRangeList() {
+        bounds = new int[8];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int start(int index) {
+        return bounds[2 * index];
+    }
+
+    public int end(int index) {
+        return bounds[2 * index + 1];
+    }
+
+    public long get(int index) {
+        return Range.of(start(index), end(index));
+    }
+
+    public void add(int start, int end) {
+        if (2 * size == bounds.length) {
+            bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+        }
+        bounds[2 * size] = start;
+        bounds[2 * size + 1] = end;
+        size += 1;
+    }
+
+    public void sort() {
+        for (int i = 1; i < size; ++i) {
+            int start = bounds[2 * i];
+            int end = bounds[2 * i + 1];
+            int j = i;
+            for (; (j > 0) && (bounds[2 * j - 2] > start); --j) {
+                bounds[2 * j] = bounds[2 * j - 2];
+                bounds[2 * j + 1] = bounds[2 * j - 1];
+            }
+            bounds[2 * j] = start;
+            bounds[2 * j + 1] = end;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(Range.toString(get(i)));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.aomatveev.texteditor.primitives;
+
+public final class Range {
+    public static final long NONE = of(-1, -1);
+
+    private Range() {
+    }
+
+    public static long of(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    public static int start(long range) {
+        return (int) (range >> 32);
+    }
+
+    public static int end(long range) {
+        return (int) range;
+    }
+
+    public static String toString(long range) {
+        return "[" + start(range) + ", " + end(range) + ")";
+    }
+}
@@ -123,7 +123,7 @@ public class SimpleCaret implements Comparable<SimpleCaret> {
             moveLeft(document);
             return;
         }
-        StringBuilder line = document.getLine(lineIndex);
+        CharSequence line = document.getLine(lineIndex);
         for (int i = charIndex - 2; i >= 0; --i) {
             if ((line.charAt(i) == ' ') && (line.charAt(i + 1) != ' ')) {
                 charIndex = i + 1;
@@ -138,7 +138,7 @@ public class SimpleCaret implements Comparable<SimpleCaret> {
             moveRight(document);
             return;
         }
-        StringBuilder line = document.getLine(lineIndex);
+        CharSequence line = document.getLine(lineIndex);
         for (int i = charIndex; i < line.length() - 1; ++i) {
             if ((line.charAt(i) == ' ') && (line.charAt(i + 1) != ' ')) {
                 charIndex = i + 1;
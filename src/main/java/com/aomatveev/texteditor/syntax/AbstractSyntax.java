@@ -1,86 +1,95 @@
 package com.aomatveev.texteditor.syntax;
 
+import com.aomatveev.texteditor.model.LineInfo;
 import com.aomatveev.texteditor.model.SimpleDocument;
-import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.model.TextSnapshot;
 import com.aomatveev.texteditor.primitives.SimpleCaret;
 import com.aomatveev.texteditor.utilities.Utilities;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class AbstractSyntax {
 
-    public static String LINE_COMMENT_IDENTIFIER;
-    public static String OPEN_TEXT_COMMENT_IDENTIFIER;
-    public static String CLOSE_TEXT_COMMENT_IDENTIFIER;
+    private static final String BRACKETS = "()[]{}";
+    private static final int SYNC_LINES = 256;
+    private static final int BATCH_LINES = 4096;
+    private static final int CHECKPOINT_INTERVAL = 1024;
 
-    private SimpleDocument document;
-
-    protected List<String> keywords;
+    private final SyntaxLexer lexer;
+    private final LineTokens tokens;
 
-    private List<Integer> matchingBracket;
-    private List<Integer> lineCommentIndex;
-    private List<List<Pair<Integer, Integer>>> textCommentIndex;
+    private SimpleDocument document;
 
     private int matchingBracketLine;
+    private int pendingStartLine = -1;
+    private int pendingEndLine = -1;
+    private int editedLine = Integer.MAX_VALUE;
+    private int generation;
+    private boolean analysing;
+    private boolean wholeDocument;
 
-    public AbstractSyntax() {
-        initCommentIdentifiers();
-        initKeywords();
+    public AbstractSyntax(SyntaxLexer language) {
+        lexer = language;
+        tokens = new LineTokens();
     }
 
     public List<String> getKeywords() {
-        return keywords;
-    }
-
-    public boolean isValidIdentifier(boolean start, char c) {
-        return false;
-    }
-
-    public void setDocument(SimpleDocument document) {
-        this.document = document;
-        initLists();
-    }
-
-    public List<Integer> getMatchingBracket() {
-        return matchingBracket;
-    }
-
-    public void addMatchingBracket() {
-        matchingBracket.add(-1);
-    }
-
-    public void removeMatchingBracket(int lineIndex) {
-        matchingBracket.remove(lineIndex);
+        return lexer.getDefinition().getKeywords();
     }
 
-    public List<Integer> getLineCommentIndex() {
-        return lineCommentIndex;
+    public boolean isKeyword(CharSequence text, int start, int end) {
+        return lexer.isKeyword(text, start, end);
     }
 
-    public void addLineCommentIndex() {
-        lineCommentIndex.add(-1);
+    public boolean isValidIdentifier(boolean start, char c) {
+        return lexer.isIdentifierPart(start, c);
     }
 
-    public void removeLineCommentIndex(int lineIndex) {
-        lineCommentIndex.remove(lineIndex);
+    public LineTokens tokenize(int lineIndex) {
+        LineTokens lineTokens = new LineTokens();
+        lexer.lex(document.getLine(lineIndex), startState(lineIndex), lineTokens);
+        return lineTokens;
     }
 
-    public List<List<Pair<Integer, Integer>>> getTextCommentIndex() {
-        return textCommentIndex;
+    public int[] checkpoints(int lineIndex) {
+        return lexer.checkpoints(document.getLine(lineIndex), startState(lineIndex), CHECKPOINT_INTERVAL);
     }
 
-    public void addTextCommentIndex() {
-        textCommentIndex.add(new ArrayList<>());
+    public LineTokens tokenize(int lineIndex, int from, int to, int[] checkpoints) {
+        int low = 0;
+        int high = checkpoints.length / 2 - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpoints[2 * middle] <= from) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        LineTokens lineTokens = new LineTokens();
+        lexer.lex(document.getLine(lineIndex), checkpoints[2 * low], to, checkpoints[2 * low + 1], lineTokens);
+        return lineTokens;
     }
 
-    public void removeTextCommentIndex(int index) {
-        textCommentIndex.remove(index);
+    public void setDocument(SimpleDocument document) {
+        if ((this.document != null) && (this.document != document)) {
+            throw new IllegalStateException("Syntax is already attached to another document");
+        }
+        this.document = document;
+        initLists();
     }
 
     public void checkIfBracket() {
         SimpleCaret currentCaret = document.getCurrentCaret();
         Character c = currentCaret.getSymbol(document);
+        if (document.hasBracketIndex()) {
+            if (Utilities.isBracket(c)) {
+                findIndexedBracket(currentCaret.lineIndex, currentCaret.charIndex, BRACKETS.indexOf(c));
+            }
+            return;
+        }
         if (isCharCommented(currentCaret.lineIndex, currentCaret.charIndex)) return;
         if (c != null) {
             if (Utilities.isBracket(c)) {
@@ -91,48 +100,110 @@ public abstract class AbstractSyntax {
 
     public void resetMatchingBracket() {
         SimpleCaret currentCaret = document.getCurrentCaret();
-        matchingBracket.set(currentCaret.lineIndex, -1);
+        document.getLineInfo(currentCaret.lineIndex).matchingBracket = -1;
         if (matchingBracketLine != -1) {
-            matchingBracket.set(matchingBracketLine, -1);
+            document.getLineInfo(matchingBracketLine).matchingBracket = -1;
         }
         matchingBracketLine = -1;
     }
 
-    public void checkIfComment() {
-        SimpleCaret currentCaret = document.getCurrentCaret();
-        checkIfComment(currentCaret.lineIndex);
+    public int checkIfComment(int startLine, int endLine) {
+        editedLine = Math.min(editedLine, startLine);
+        if ((pendingStartLine != -1) && (startLine > pendingStartLine)) {
+            pendingEndLine = Math.max(pendingEndLine, endLine + 1);
+            analyseInBackground();
+            return endLine;
+        }
+        int state = SyntaxLexer.DEFAULT_STATE;
+        if ((startLine > 0) && (document.getLineInfo(startLine - 1).lexerState != -1)) {
+            state = document.getLineInfo(startLine - 1).lexerState;
+        }
+        boolean background = document.getHighlightingService() != null;
+        int lastLine = endLine;
+        for (int i = startLine; i < document.linesSize(); ++i) {
+            int cachedState = document.getLineInfo(i).lexerState;
+            state = lexLine(i, state);
+            lastLine = i;
+            if ((i >= endLine) && ((state == cachedState) || (cachedState == -1)) && (isConverged(i))) {
+                if (i >= pendingStartLine) {
+                    pendingStartLine = -1;
+                }
+                break;
+            }
+            if ((background) && (i >= startLine + SYNC_LINES) && (i + 1 < document.linesSize())) {
+                pendingEndLine = Math.max(pendingStartLine == -1 ? 0 : pendingEndLine, Math.max(i, endLine) + 1);
+                pendingStartLine = i + 1;
+                analyseInBackground();
+                break;
+            }
+            if (i == document.linesSize() - 1) {
+                pendingStartLine = -1;
+            }
+        }
+        document.refreshLineInfos(startLine, lastLine);
+        return Math.max(lastLine, endLine);
     }
 
-    public void resetComment() {
-        resetLineComment();
+    public boolean isIndexed() {
+        return true;
     }
 
-    protected void initCommentIdentifiers() {
-        LINE_COMMENT_IDENTIFIER = null;
-        OPEN_TEXT_COMMENT_IDENTIFIER = null;
-        CLOSE_TEXT_COMMENT_IDENTIFIER = null;
+    public boolean isLineAnalysed(int lineIndex) {
+        return (pendingStartLine == -1) || (lineIndex < pendingStartLine);
     }
 
-    protected void initKeywords() {
-        keywords = new ArrayList<>();
+    public void lineInserted(int lineIndex) {
+        linesInserted(lineIndex, 1);
     }
 
-    protected void checkIfComment(int lineIndex) {
-        checkIfLineComment(lineIndex);
-        checkIfTextComment(lineIndex);
+    public void linesInserted(int lineIndex, int count) {
+        editedLine = Math.min(editedLine, lineIndex);
+        if (pendingStartLine == -1) return;
+        if (lineIndex < pendingStartLine) pendingStartLine += count;
+        if (lineIndex <= pendingEndLine) pendingEndLine += count;
+    }
+
+    public void lineRemoved(int lineIndex) {
+        linesRemoved(lineIndex, lineIndex + 1);
+    }
+
+    public void linesRemoved(int from, int to) {
+        editedLine = Math.min(editedLine, from);
+        if (pendingStartLine == -1) return;
+        pendingStartLine -= Math.max(Math.min(to, pendingStartLine) - from, 0);
+        pendingEndLine -= Math.max(Math.min(to, pendingEndLine) - from, 0);
+    }
+
+    public int getMatchingBracketLine() {
+        return matchingBracketLine;
     }
 
     private void initLists() {
-        matchingBracket = new ArrayList<>();
-        lineCommentIndex = new ArrayList<>();
-        textCommentIndex = new ArrayList<>();
-        for (int i = 0; i < document.linesSize(); ++i) {
-            matchingBracket.add(-1);
-            lineCommentIndex.add(-1);
-            textCommentIndex.add(new ArrayList<>());
-            checkIfComment(i);
-        }
+        generation += 1;
+        pendingStartLine = -1;
         matchingBracketLine = -1;
+        if (document.isReadOnly()) {
+            return;
+        }
+        document.resetLineInfos();
+        if ((!isIndexed()) || (document.isPaged())) {
+            return;
+        }
+        if (document.linesSize() <= SYNC_LINES) {
+            checkIfComment(0, document.linesSize() - 1);
+        } else if (document.getHighlightingService() == null) {
+            LexedLines result = ParallelLexer.lex(lexer, document.getSnapshot(0, document.linesSize() - 1),
+                    document.linesSize(), SyntaxLexer.DEFAULT_STATE, ForkJoinPool.commonPool());
+            for (int i = 0; i < result.size(); ++i) {
+                applyLexed(document.getLineInfo(i), result, i);
+            }
+            document.refreshLineInfos(0, document.linesSize() - 1);
+        } else {
+            pendingStartLine = 0;
+            pendingEndLine = document.linesSize();
+            wholeDocument = true;
+            analyseInBackground();
+        }
     }
 
     private void findMatchingBracket() {
@@ -146,28 +217,158 @@ public abstract class AbstractSyntax {
         }
     }
 
+    private boolean isConverged(int lineIndex) {
+        return (pendingStartLine == -1) || (lineIndex < pendingStartLine) || (lineIndex >= pendingEndLine);
+    }
+
+    private void analyseInBackground() {
+        if (analysing) {
+            return;
+        }
+        analysing = true;
+        int startLine = pendingStartLine;
+        int state = startLine == 0 ? SyntaxLexer.DEFAULT_STATE : document.getLineInfo(startLine - 1).lexerState;
+        int size = document.linesSize() - startLine;
+        int count = wholeDocument ? size : Math.min(BATCH_LINES, size);
+        TextSnapshot text = document.getSnapshot(startLine, startLine + count - 1);
+        long version = document.getVersion();
+        int batchGeneration = generation;
+        editedLine = Integer.MAX_VALUE;
+        document.getHighlightingService().submit(
+                () -> ParallelLexer.lex(lexer, text, count, state, ForkJoinPool.commonPool()), result -> {
+            analysing = false;
+            if ((batchGeneration != generation) || (document.getSyntax() != this) || (pendingStartLine == -1)) {
+                return;
+            }
+            if (document.isReadOnly()) {
+                pendingStartLine = -1;
+                return;
+            }
+            if (startLine != pendingStartLine) {
+                analyseInBackground();
+            } else if (version == document.getVersion()) {
+                applyBatch(startLine, result, result.size());
+            } else if ((editedLine != Integer.MAX_VALUE) && (editedLine > startLine)) {
+                applyBatch(startLine, result, Math.min(editedLine - startLine, result.size()));
+            } else {
+                analyseInBackground();
+            }
+        }, e -> {
+            analysing = false;
+            System.out.println(e.getMessage());
+        });
+    }
+
+    private void applyBatch(int startLine, LexedLines result, int size) {
+        wholeDocument = false;
+        int lastLine = startLine + size - 1;
+        for (int i = 0; i < size; ++i) {
+            int lineIndex = startLine + i;
+            int cachedState = document.getLineInfo(lineIndex).lexerState;
+            applyLexed(document.getLineInfo(lineIndex), result, i);
+            if (((result.getState(i) == cachedState) || (cachedState == -1)) && (lineIndex >= pendingEndLine)) {
+                lastLine = lineIndex;
+                break;
+            }
+        }
+        document.refreshLineInfos(startLine, lastLine);
+        if ((lastLine < startLine + size - 1) || (lastLine == document.linesSize() - 1)) {
+            pendingStartLine = -1;
+            document.linesAnalysed(startLine, document.linesSize() - 1);
+            return;
+        }
+        pendingStartLine = lastLine + 1;
+        document.linesAnalysed(startLine, lastLine);
+        analyseInBackground();
+    }
+
+    private void findIndexedBracket(int lineIndex, int charIndex, int code) {
+        int[] brackets = document.getLineInfo(lineIndex).brackets;
+        int position = Arrays.binarySearch(brackets, (charIndex << 3) | code);
+        if (position < 0) return;
+        int type = code >> 1;
+        if ((code & 1) == 0) {
+            int balance = 1;
+            for (int i = position + 1; i < brackets.length; ++i) {
+                balance = nextBalance(balance, brackets[i], type);
+                if (balance == 0) {
+                    setMatchingBracket(lineIndex, brackets[i]);
+                    return;
+                }
+            }
+            int line = document.findCloseBracketLine(lineIndex + 1, type, balance);
+            if (line == -1) return;
+            balance = document.getFoundBracketBalance();
+            for (int bracket : document.getLineInfo(line).brackets) {
+                balance = nextBalance(balance, bracket, type);
+                if (balance == 0) {
+                    setMatchingBracket(line, bracket);
+                    return;
+                }
+            }
+        } else {
+            int balance = 1;
+            for (int i = position - 1; i >= 0; --i) {
+                balance = previousBalance(balance, brackets[i], type);
+                if (balance == 0) {
+                    setMatchingBracket(lineIndex, brackets[i]);
+                    return;
+                }
+            }
+            if (lineIndex == 0) return;
+            int line = document.findOpenBracketLine(lineIndex - 1, type, balance);
+            if (line == -1) return;
+            balance = document.getFoundBracketBalance();
+            brackets = document.getLineInfo(line).brackets;
+            for (int i = brackets.length - 1; i >= 0; --i) {
+                balance = previousBalance(balance, brackets[i], type);
+                if (balance == 0) {
+                    setMatchingBracket(line, brackets[i]);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void setMatchingBracket(int lineIndex, int bracket) {
+        document.getLineInfo(lineIndex).matchingBracket = bracket >> 3;
+        matchingBracketLine = lineIndex;
+    }
+
+    private static int nextBalance(int balance, int bracket, int type) {
+        if ((bracket & 7) >> 1 != type) return balance;
+        return (bracket & 1) == 0 ? balance + 1 : balance - 1;
+    }
+
+    private static int previousBalance(int balance, int bracket, int type) {
+        if ((bracket & 7) >> 1 != type) return balance;
+        return (bracket & 1) == 0 ? balance - 1 : balance + 1;
+    }
+
     private void findCloseBracket(char bracketChar, char matchingBracketChar) {
         SimpleCaret currentCaret = document.getCurrentCaret();
         int lineIndex = currentCaret.lineIndex;
         int charIndex = currentCaret.charIndex;
         int balance = 1;
-        for (int i = charIndex + 1; i < document.lineLength(lineIndex); ++i) {
+        CharSequence line = document.getLine(lineIndex);
+        for (int i = charIndex + 1; i < line.length(); ++i) {
             if (isCharCommented(lineIndex, i)) continue;
-            if (document.getLine(lineIndex).charAt(i) == bracketChar) balance += 1;
-            if (document.getLine(lineIndex).charAt(i) == matchingBracketChar) balance -= 1;
+            if (line.charAt(i) == bracketChar) balance += 1;
+            if (line.charAt(i) == matchingBracketChar) balance -= 1;
             if (balance == 0) {
-                matchingBracket.set(lineIndex, i);
+                document.getLineInfo(lineIndex).matchingBracket = i;
                 matchingBracketLine = lineIndex;
                 return;
             }
         }
         for (int i = lineIndex + 1; i < document.linesSize(); ++i) {
-            for (int j = 0; j < document.lineLength(i); ++j) {
+            line = document.getLine(i);
+            for (int j = 0; j < line.length(); ++j) {
                 if (isCharCommented(i, j)) continue;
-                if (document.getLine(i).charAt(j) == bracketChar) balance += 1;
-                if (document.getLine(i).charAt(j) == matchingBracketChar) balance -= 1;
+                if (line.charAt(j) == bracketChar) balance += 1;
+                if (line.charAt(j) == matchingBracketChar) balance -= 1;
                 if (balance == 0) {
-                    matchingBracket.set(i, j);
+                    document.getLineInfo(i).matchingBracket = j;
                     matchingBracketLine = i;
                     return;
                 }
@@ -180,23 +381,25 @@ public abstract class AbstractSyntax {
         int lineIndex = currentCaret.lineIndex;
         int charIndex = currentCaret.charIndex;
         int balance = 1;
+        CharSequence line = document.getLine(lineIndex);
         for (int i = charIndex - 1; i >= 0; i--) {
             if (isCharCommented(lineIndex, i)) continue;
-            if (document.getLine(lineIndex).charAt(i) == bracketChar) balance += 1;
-            if (document.getLine(lineIndex).charAt(i) == matchingBracketChar) balance -= 1;
+            if (line.charAt(i) == bracketChar) balance += 1;
+            if (line.charAt(i) == matchingBracketChar) balance -= 1;
             if (balance == 0) {
-                matchingBracket.set(lineIndex, i);
+                document.getLineInfo(lineIndex).matchingBracket = i;
                 matchingBracketLine = lineIndex;
                 return;
             }
         }
         for (int i = lineIndex - 1; i >= 0; --i) {
-            for (int j = document.lineLength(i) - 1; j >= 0; --j) {
+            line = document.getLine(i);
+            for (int j = line.length() - 1; j >= 0; --j) {
                 if (isCharCommented(i, j)) continue;
-                if (document.getLine(i).charAt(j) == bracketChar) balance += 1;
-                if (document.getLine(i).charAt(j) == matchingBracketChar) balance -= 1;
+                if (line.charAt(j) == bracketChar) balance += 1;
+                if (line.charAt(j) == matchingBracketChar) balance -= 1;
                 if (balance == 0) {
-                    matchingBracket.set(i, j);
+                    document.getLineInfo(i).matchingBracket = j;
                     matchingBracketLine = i;
                     return;
                 }
@@ -205,111 +408,33 @@ public abstract class AbstractSyntax {
     }
 
     private boolean isCharCommented(int lineIndex, int charIndex) {
-        List<Pair<Integer, Integer>> pairs = textCommentIndex.get(lineIndex);
-        for (Pair<Integer, Integer> pair : pairs) {
-            if ((charIndex >= pair.getFirst()) && (charIndex < pair.getSecond())) {
-                return true;
-            }
-        }
-        int index = lineCommentIndex.get(lineIndex);
-        return index != -1 && charIndex >= index;
-    }
-
-    private boolean isCharTextCommented(int lineIndex, int charIndex) {
-        List<Pair<Integer, Integer>> pairs = textCommentIndex.get(lineIndex);
-        for (Pair<Integer, Integer> pair : pairs) {
-            if ((charIndex >= pair.getFirst()) && (charIndex < pair.getSecond())) {
-                return true;
-            }
-        }
-        return false;
+        return document.getLineInfo(lineIndex).isCommented(charIndex);
     }
 
-    private void checkIfLineComment(int lineIndex) {
-        String commentString = LINE_COMMENT_IDENTIFIER;
-        int index = document.getLine(lineIndex).indexOf(commentString);
-        if (index != -1) {
-            setLineComment(lineIndex, index);
-        }
-    }
-
-    private void setLineComment(int lineIndex, int index) {
-        lineCommentIndex.set(lineIndex, index);
+    private int lexLine(int lineIndex, int state) {
+        state = lexer.lex(document.getLine(lineIndex), state, tokens);
+        apply(document.getLineInfo(lineIndex), state, tokens.getLineComment(), tokens.getComments(),
+                tokens.getBrackets());
+        return state;
     }
 
-    private void resetLineComment() {
-        SimpleCaret currentCaret = document.getCurrentCaret();
-        String commentString = LINE_COMMENT_IDENTIFIER;
-        int index = document.getLine(currentCaret.lineIndex).indexOf(commentString);
-        if (index == -1) {
-            lineCommentIndex.set(currentCaret.lineIndex, -1);
+    private int startState(int lineIndex) {
+        if ((lineIndex > 0) && (document.getLineInfo(lineIndex - 1).lexerState != -1)) {
+            return document.getLineInfo(lineIndex - 1).lexerState;
         }
+        return SyntaxLexer.DEFAULT_STATE;
     }
 
-    private boolean isPrevLineCommented(int lineIndex) {
-        while ((lineIndex > 0) && (document.lineLength(lineIndex - 1) == 0)) {
-            lineIndex -= 1;
-        }
-        if (lineIndex == 0) return false;
-        if (isCharTextCommented(lineIndex - 1, document.lineLength(lineIndex - 1) - 1)) {
-            StringBuilder line = document.getLine(lineIndex - 1);
-            if (line.length() < CLOSE_TEXT_COMMENT_IDENTIFIER.length()) return true;
-            if ((line.length() >= CLOSE_TEXT_COMMENT_IDENTIFIER.length()) && (!CLOSE_TEXT_COMMENT_IDENTIFIER.equals(
-                    line.substring(line.length() - CLOSE_TEXT_COMMENT_IDENTIFIER.length())))) {
-                return true;
-            }
-        }
-        return false;
+    private static void applyLexed(LineInfo info, LexedLines result, int index) {
+        apply(info, result.getState(index), result.getLineComment(index), result.getComments(index),
+                result.getBrackets(index));
     }
 
-    private boolean isNextLineCommented(int lineIndex) {
-        while ((lineIndex + 1 < textCommentIndex.size()) && (document.lineLength(lineIndex + 1) == 0)) {
-            lineIndex += 1;
-        }
-        if (lineIndex + 1 == textCommentIndex.size()) return false;
-        if (isCharTextCommented(lineIndex + 1, 0)) {
-            StringBuilder line = document.getLine(lineIndex + 1);
-            if (line.length() < OPEN_TEXT_COMMENT_IDENTIFIER.length()) return true;
-            if ((line.length() >= OPEN_TEXT_COMMENT_IDENTIFIER.length()) &&
-                    (!OPEN_TEXT_COMMENT_IDENTIFIER.equals(line.substring(0, OPEN_TEXT_COMMENT_IDENTIFIER.length())))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private void checkIfTextComment(int lineIndex) {
-        if (lineIndex == textCommentIndex.size()) return;
-        if (document.lineLength(lineIndex) == 0) {
-            checkIfTextComment(lineIndex + 1);
-        }
-        boolean commentedMode = isPrevLineCommented(lineIndex);
-        StringBuilder line = document.getLine(lineIndex);
-        List<Pair<Integer, Integer>> res = new ArrayList<>();
-        int start = 0;
-        for (int i = 0; i < line.length(); ++i) {
-            if ((i + OPEN_TEXT_COMMENT_IDENTIFIER.length() <= line.length()) &&
-                    (OPEN_TEXT_COMMENT_IDENTIFIER.equals(line.substring(i, i + OPEN_TEXT_COMMENT_IDENTIFIER.length())))) {
-                if (!commentedMode) {
-                    commentedMode = true;
-                    start = i;
-                }
-            }
-            if ((i + CLOSE_TEXT_COMMENT_IDENTIFIER.length() <= line.length()) &&
-                    (CLOSE_TEXT_COMMENT_IDENTIFIER.equals(line.substring(i, i + CLOSE_TEXT_COMMENT_IDENTIFIER.length())))) {
-                if (commentedMode) {
-                    res.add(new Pair<>(start, i + CLOSE_TEXT_COMMENT_IDENTIFIER.length()));
-                    commentedMode = false;
-                }
-            }
-        }
-        if (commentedMode) {
-            res.add(new Pair<>(start, line.length()));
-        }
-        textCommentIndex.set(lineIndex, res);
-        if (((commentedMode) && (!isNextLineCommented(lineIndex))) ||
-                ((!commentedMode) && (isNextLineCommented(lineIndex)))) {
-            checkIfTextComment(lineIndex + 1);
-        }
+    private static void apply(LineInfo info, int state, int lineComment, int[] comments, int[] brackets) {
+        info.lineCommentIndex = lineComment;
+        info.textComments = comments;
+        info.lexerState = state;
+        info.setBrackets(brackets);
+        info.version += 1;
     }
 }
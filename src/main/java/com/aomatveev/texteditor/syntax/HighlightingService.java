@@ -0,0 +1,43 @@
+package com.aomatveev.texteditor.syntax;
+
+import javax.swing.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class HighlightingService {
+
+    private static final ExecutorService SHARED_WORKERS =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "highlighting");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Executor worker;
+    private final Executor publisher;
+
+    public HighlightingService() {
+        this(SHARED_WORKERS, SwingUtilities::invokeLater);
+    }
+
+    public HighlightingService(Executor worker, Executor publisher) {
+        this.worker = worker;
+        this.publisher = publisher;
+    }
+
+    public <T> void submit(Supplier<T> task, Consumer<T> callback, Consumer<Throwable> failure) {
+        worker.execute(() -> {
+            T result;
+            try {
+                result = task.get();
+            } catch (Throwable e) {
+                publisher.execute(() -> failure.accept(e));
+                return;
+            }
+            publisher.execute(() -> callback.accept(result));
+        });
+    }
+}
@@ -1,32 +1,21 @@
 package com.aomatveev.texteditor.syntax;
 
-import java.util.Arrays;
-
 public class JavaSyntax extends AbstractSyntax {
 
-    @Override
-    public boolean isValidIdentifier(boolean start, char c) {
-        if (start) {
-            return Character.isJavaIdentifierPart(c);
-        } else {
-            return Character.isJavaIdentifierStart(c);
-        }
-    }
-
-    @Override
-    protected void initCommentIdentifiers() {
-        LINE_COMMENT_IDENTIFIER = "//";
-        OPEN_TEXT_COMMENT_IDENTIFIER = "/*";
-        CLOSE_TEXT_COMMENT_IDENTIFIER = "*/";
-    }
+    private static final SyntaxLexer LANGUAGE = new SyntaxLexer(new SyntaxDefinition()
+            .identifiers(true)
+            .keywords(
+                    "abstract", "continue", "for", "new", "switch", "assert", "default", "package", "synchronized",
+                    "boolean", "do", "if", "private", "this", "break", "double", "implements", "protected", "throw",
+                    "byte", "else", "import", "public", "throws", "case", "enum", "instanceof", "return", "transient",
+                    "catch", "extends", "int", "short", "try", "char", "final", "interface", "static", "void", "class",
+                    "finally", "long", "strictfp", "volatile", "float", "native", "super", "while")
+            .lineComment("//")
+            .blockComment("/*", "*/")
+            .quotes("\"'")
+            .escape('\\'));
 
-    @Override
-    protected void initKeywords() {
-        keywords = Arrays.asList(
-                "abstract", "continue", "for", "new", "switch", "assert", "default", "package", "synchronized",
-                "boolean", "do", "if", "private", "this", "break", "double", "implements", "protected", "throw",
-                "byte", "else", "import", "public", "throws", "case", "enum", "instanceof", "return", "transient",
-                "catch", "extends", "int", "short", "try", "char", "final", "interface", "static", "void", "class",
-                "finally", "long", "strictfp", "volatile", "float", "native", "super", "while");
+    public JavaSyntax() {
+        super(LANGUAGE);
     }
 }
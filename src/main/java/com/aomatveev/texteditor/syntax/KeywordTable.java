@@ -0,0 +1,74 @@
+package com.aomatveev.texteditor.syntax;
+
+import java.util.List;
+
+public class KeywordTable {
+
+    private static final int SEED_ATTEMPTS = 256;
+
+    private final char[][] slots;
+    private final int mask;
+    private final int seed;
+    private final int maxLength;
+
+    public KeywordTable(List<String> keywords) {
+        int size = Integer.highestOneBit(Math.max(keywords.size(), 1) * 2 - 1) << 1;
+        int maxLength = 0;
+        for (String keyword : keywords) {
+            maxLength = Math.max(maxLength, keyword.length());
+        }
+        this.maxLength = maxLength;
+        while (true) {
+            for (int attempt = 0; attempt < SEED_ATTEMPTS; ++attempt) {
+                int seed = 2 * attempt + 31;
+                char[][] slots = fill(keywords, size, seed);
+                if (slots != null) {
+                    this.slots = slots;
+                    this.mask = size - 1;
+                    this.seed = seed;
+                    return;
+                }
+            }
+            size <<= 1;
+        }
+    }
+
+    public boolean contains(CharSequence text, int start, int end) {
+        if (end - start > maxLength) {
+            return false;
+        }
+        char[] keyword = slots[hash(text, start, end, seed) & mask];
+        if ((keyword == null) || (keyword.length != end - start)) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; ++i) {
+            if (keyword[i] != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char[][] fill(List<String> keywords, int size, int seed) {
+        char[][] slots = new char[size][];
+        for (String keyword : keywords) {
+            int slot = hash(keyword, 0, keyword.length(), seed) & (size - 1);
+            if (slots[slot] != null) {
+                if (keyword.equals(new String(slots[slot]))) {
+                    continue;
+                }
+                return null;
+            }
+            slots[slot] = keyword.toCharArray();
+        }
+        return slots;
+    }
+
+    private static int hash(CharSequence text, int start, int end, int seed) {
+        int h = end - start;
+        for (int i = start; i < end; ++i) {
+            h = h * seed + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,49 @@
+package com.aomatveev.texteditor.syntax;
+
+public class LexedLines {
+    private final int[] states;
+    private final int[] lineComments;
+    private final int[][] comments;
+    private final int[][] brackets;
+
+    public LexedLines(int size) {
+        states = new int[size];
+        lineComments = new int[size];
+        comments = new int[size][];
+        brackets = new int[size][];
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    public int getState(int index) {
+        return states[index];
+    }
+
+    public int getLineComment(int index) {
+        return lineComments[index];
+    }
+
+    public int[] getComments(int index) {
+        return comments[index];
+    }
+
+    public int[] getBrackets(int index) {
+        return brackets[index];
+    }
+
+    void set(int index, LineTokens tokens) {
+        states[index] = tokens.getState();
+        lineComments[index] = tokens.getLineComment();
+        comments[index] = tokens.getComments();
+        brackets[index] = tokens.getBrackets();
+    }
+
+    void copy(LexedLines lines, int offset) {
+        System.arraycopy(lines.states, 0, states, offset, lines.size());
+        System.arraycopy(lines.lineComments, 0, lineComments, offset, lines.size());
+        System.arraycopy(lines.comments, 0, comments, offset, lines.size());
+        System.arraycopy(lines.brackets, 0, brackets, offset, lines.size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.aomatveev.texteditor.syntax;
+
+import java.util.Arrays;
+
+public class LineTokens {
+    public static final int IDENTIFIER = 0;
+    public static final int KEYWORD = 1;
+    public static final int LITERAL = 2;
+    public static final int COMMENT = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private int size;
+    private int[] kinds = new int[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int bracketsSize;
+    private int[] brackets = new int[16];
+    private int lineComment;
+    private int state;
+
+    public int size() {
+        return size;
+    }
+
+    public int kind(int index) {
+        return kinds[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public int[] getBrackets() {
+        return bracketsSize == 0 ? EMPTY : Arrays.copyOf(brackets, bracketsSize);
+    }
+
+    public int[] getComments() {
+        int commentsSize = 0;
+        for (int i = 0; i < size; ++i) {
+            if ((kinds[i] == COMMENT) && (starts[i] != lineComment)) {
+                commentsSize += 1;
+            }
+        }
+        if (commentsSize == 0) {
+            return EMPTY;
+        }
+        int[] comments = new int[2 * commentsSize];
+        int position = 0;
+        for (int i = 0; i < size; ++i) {
+            if ((kinds[i] == COMMENT) && (starts[i] != lineComment)) {
+                comments[position++] = starts[i];
+                comments[position++] = ends[i];
+            }
+        }
+        return comments;
+    }
+
+    public int getLineComment() {
+        return lineComment;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    void clear() {
+        size = 0;
+        bracketsSize = 0;
+        lineComment = -1;
+    }
+
+    void add(int kind, int start, int end) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * size);
+            starts = Arrays.copyOf(starts, 2 * size);
+            ends = Arrays.copyOf(ends, 2 * size);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        size += 1;
+    }
+
+    void addBracket(int bracket) {
+        if (bracketsSize == brackets.length) {
+            brackets = Arrays.copyOf(brackets, 2 * bracketsSize);
+        }
+        brackets[bracketsSize++] = bracket;
+    }
+
+    void setLineComment(int lineComment) {
+        this.lineComment = lineComment;
+    }
+
+    void setState(int state) {
+        this.state = state;
+    }
+}
@@ -2,18 +2,19 @@ package com.aomatveev.texteditor.syntax;
 
 public class NoneSyntax extends AbstractSyntax {
 
-    @Override
-    public void checkIfComment() {
+    private static final SyntaxLexer LANGUAGE = new SyntaxLexer(new SyntaxDefinition());
 
+    public NoneSyntax() {
+        super(LANGUAGE);
     }
 
     @Override
-    public void resetComment() {
-
+    public int checkIfComment(int startLine, int endLine) {
+        return endLine;
     }
 
     @Override
-    protected void checkIfComment(int lineIndex) {
-
+    public boolean isIndexed() {
+        return false;
     }
 }
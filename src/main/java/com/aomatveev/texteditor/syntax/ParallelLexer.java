@@ -0,0 +1,142 @@
+package com.aomatveev.texteditor.syntax;
+
+import com.aomatveev.texteditor.model.TextSnapshot;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelLexer {
+
+    private static final int MIN_CHUNK_LINES = 1024;
+    private static final int SNAPSHOT_CHUNK_LINES = 1 << 16;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final SyntaxLexer lexer;
+    private final String[] lines;
+    private final int startState;
+    private final int chunkLines;
+    private final int[] chunkStates;
+    private final LexedLines result;
+
+    private ParallelLexer(SyntaxLexer lexer, String[] lines, int startState, int parallelism) {
+        this.lexer = lexer;
+        this.lines = lines;
+        this.startState = startState;
+        chunkLines = Math.max(MIN_CHUNK_LINES, (lines.length + 4 * parallelism - 1) / (4 * parallelism));
+        chunkStates = new int[(lines.length + chunkLines - 1) / chunkLines];
+        result = new LexedLines(lines.length);
+    }
+
+    public static LexedLines lex(SyntaxLexer lexer, String[] lines, int startState, ForkJoinPool pool) {
+        ParallelLexer parallelLexer = new ParallelLexer(lexer, lines, startState, pool.getParallelism());
+        if (parallelLexer.chunkStates.length > 1) {
+            pool.invoke(parallelLexer.new Speculation(0, parallelLexer.chunkStates.length));
+        } else if (parallelLexer.chunkStates.length == 1) {
+            parallelLexer.lexChunk(0);
+        }
+        parallelLexer.stitch();
+        return parallelLexer.result;
+    }
+
+    public static LexedLines lex(SyntaxLexer lexer, TextSnapshot snapshot, int linesSize, int startState,
+                                 ForkJoinPool pool) {
+        LexedLines result = new LexedLines(linesSize);
+        String[] lines = new String[Math.min(linesSize, SNAPSHOT_CHUNK_LINES)];
+        StringBuilder line = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int state = startState;
+        int lexedLines = 0;
+        int chunkSize = 0;
+        try (Reader reader = snapshot.openReader()) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; ++i) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    line.append(buffer, start, i - start);
+                    start = i + 1;
+                    lines[chunkSize++] = line.toString();
+                    line.setLength(0);
+                    if (chunkSize == lines.length) {
+                        state = lexChunk(lexer, lines, chunkSize, state, pool, result, lexedLines);
+                        lexedLines += chunkSize;
+                        chunkSize = 0;
+                    }
+                }
+                line.append(buffer, start, read - start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lines[chunkSize++] = line.toString();
+        lexChunk(lexer, lines, chunkSize, state, pool, result, lexedLines);
+        return result;
+    }
+
+    private static int lexChunk(SyntaxLexer lexer, String[] lines, int size, int state, ForkJoinPool pool,
+                                LexedLines result, int offset) {
+        LexedLines chunk = lex(lexer, size == lines.length ? lines : Arrays.copyOf(lines, size), state, pool);
+        result.copy(chunk, offset);
+        return chunk.getState(size - 1);
+    }
+
+    private void lexChunk(int chunk) {
+        int state = chunk == 0 ? startState : SyntaxLexer.DEFAULT_STATE;
+        LineTokens tokens = new LineTokens();
+        int end = Math.min(lines.length, (chunk + 1) * chunkLines);
+        for (int i = chunk * chunkLines; i < end; ++i) {
+            state = lexer.lex(lines[i], state, tokens);
+            result.set(i, tokens);
+        }
+        chunkStates[chunk] = state;
+    }
+
+    private void stitch() {
+        LineTokens tokens = new LineTokens();
+        for (int chunk = 1; chunk < chunkStates.length; ++chunk) {
+            int state = chunkStates[chunk - 1];
+            if (state == SyntaxLexer.DEFAULT_STATE) {
+                continue;
+            }
+            int end = Math.min(lines.length, (chunk + 1) * chunkLines);
+            for (int i = chunk * chunkLines; i < end; ++i) {
+                int speculativeState = result.getState(i);
+                state = lexer.lex(lines[i], state, tokens);
+                result.set(i, tokens);
+                if (state == speculativeState) {
+                    break;
+                }
+                if (i == end - 1) {
+                    chunkStates[chunk] = state;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Speculation extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        private Speculation(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                lexChunk(from);
+                return;
+            }
+            int middle = (from + to) / 2;
+            invokeAll(new Speculation(from, middle), new Speculation(middle, to));
+        }
+    }
+}
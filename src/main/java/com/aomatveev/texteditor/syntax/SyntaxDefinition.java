@@ -0,0 +1,87 @@
+package com.aomatveev.texteditor.syntax;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class SyntaxDefinition {
+    private final boolean identifiers;
+    private final List<String> keywords;
+    private final String lineComment;
+    private final String blockCommentStart;
+    private final String blockCommentEnd;
+    private final String quotes;
+    private final char escape;
+
+    public SyntaxDefinition() {
+        this(false, Collections.emptyList(), null, null, null, "", (char) 0);
+    }
+
+    private SyntaxDefinition(boolean identifiers, List<String> keywords, String lineComment,
+                             String blockCommentStart, String blockCommentEnd, String quotes, char escape) {
+        this.identifiers = identifiers;
+        this.keywords = keywords;
+        this.lineComment = lineComment;
+        this.blockCommentStart = blockCommentStart;
+        this.blockCommentEnd = blockCommentEnd;
+        this.quotes = quotes;
+        this.escape = escape;
+    }
+
+    public SyntaxDefinition identifiers(boolean identifiers) {
+        return new SyntaxDefinition(identifiers, keywords, lineComment, blockCommentStart, blockCommentEnd,
+                quotes, escape);
+    }
+
+    public SyntaxDefinition keywords(String... keywords) {
+        return new SyntaxDefinition(identifiers, Collections.unmodifiableList(Arrays.asList(keywords.clone())),
+                lineComment, blockCommentStart, blockCommentEnd, quotes, escape);
+    }
+
+    public SyntaxDefinition lineComment(String lineComment) {
+        return new SyntaxDefinition(identifiers, keywords, lineComment, blockCommentStart, blockCommentEnd,
+                quotes, escape);
+    }
+
+    public SyntaxDefinition blockComment(String start, String end) {
+        return new SyntaxDefinition(identifiers, keywords, lineComment, start, end, quotes, escape);
+    }
+
+    public SyntaxDefinition quotes(String quotes) {
+        return new SyntaxDefinition(identifiers, keywords, lineComment, blockCommentStart, blockCommentEnd,
+                quotes, escape);
+    }
+
+    public SyntaxDefinition escape(char escape) {
+        return new SyntaxDefinition(identifiers, keywords, lineComment, blockCommentStart, blockCommentEnd,
+                quotes, escape);
+    }
+
+    public boolean hasIdentifiers() {
+        return identifiers;
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public String getLineComment() {
+        return lineComment;
+    }
+
+    public String getBlockCommentStart() {
+        return blockCommentStart;
+    }
+
+    public String getBlockCommentEnd() {
+        return blockCommentEnd;
+    }
+
+    public String getQuotes() {
+        return quotes;
+    }
+
+    public char getEscape() {
+        return escape;
+    }
+}
@@ -0,0 +1,263 @@
+package com.aomatveev.texteditor.syntax;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+public class SyntaxLexer {
+    public static final int DEFAULT_STATE = 0;
+    public static final int BLOCK_COMMENT_STATE = 1;
+
+    private static final String BRACKETS = "()[]{}";
+
+    private static final int NONE = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_START = 2;
+    private static final int BLOCK_END = 3;
+    private static final int QUOTE_START = 4;
+    private static final int QUOTE_END = 5;
+    private static final int ESCAPE = 6;
+
+    private final SyntaxDefinition definition;
+    private final boolean identifiers;
+    private final KeywordTable keywords;
+    private final byte[] classes;
+    private final int classesSize;
+    private final int[] roots;
+    private final int[] next;
+    private final int[] actions;
+    private final int[] lengths;
+    private final int[] targets;
+
+    public SyntaxLexer(SyntaxDefinition definition) {
+        this.definition = definition;
+        identifiers = definition.hasIdentifiers();
+        keywords = new KeywordTable(definition.getKeywords());
+        String quotes = definition.getQuotes();
+        String escape = definition.getEscape() == 0 ? null : String.valueOf(definition.getEscape());
+
+        classes = new byte[Character.MAX_VALUE + 1];
+        int classesSize = 1;
+        StringBuilder patternChars = new StringBuilder(quotes);
+        for (String pattern : Arrays.asList(definition.getLineComment(), definition.getBlockCommentStart(),
+                definition.getBlockCommentEnd(), escape)) {
+            if (pattern != null) {
+                patternChars.append(pattern);
+            }
+        }
+        for (int i = 0; i < patternChars.length(); ++i) {
+            if (classes[patternChars.charAt(i)] == 0) {
+                classes[patternChars.charAt(i)] = (byte) classesSize++;
+            }
+        }
+        this.classesSize = classesSize;
+
+        Automaton automaton = new Automaton(2 + quotes.length());
+        automaton.add(DEFAULT_STATE, definition.getLineComment(), LINE_COMMENT, DEFAULT_STATE);
+        if ((definition.getBlockCommentStart() != null) && (definition.getBlockCommentEnd() != null)) {
+            automaton.add(DEFAULT_STATE, definition.getBlockCommentStart(), BLOCK_START, BLOCK_COMMENT_STATE);
+            automaton.add(BLOCK_COMMENT_STATE, definition.getBlockCommentEnd(), BLOCK_END, DEFAULT_STATE);
+        }
+        for (int q = 0; q < quotes.length(); ++q) {
+            String quote = String.valueOf(quotes.charAt(q));
+            automaton.add(DEFAULT_STATE, quote, QUOTE_START, 2 + q);
+            automaton.add(2 + q, escape, ESCAPE, 2 + q);
+            automaton.add(2 + q, quote, QUOTE_END, DEFAULT_STATE);
+        }
+        roots = automaton.roots;
+        int statesSize = automaton.children.size();
+        next = new int[statesSize * classesSize];
+        actions = new int[statesSize];
+        lengths = new int[statesSize];
+        targets = new int[statesSize];
+        automaton.compile();
+    }
+
+    public SyntaxDefinition getDefinition() {
+        return definition;
+    }
+
+    public boolean isKeyword(CharSequence text, int start, int end) {
+        return keywords.contains(text, start, end);
+    }
+
+    public boolean isIdentifierPart(boolean start, char c) {
+        if (!identifiers) {
+            return false;
+        }
+        return start ? Character.isJavaIdentifierPart(c) : Character.isJavaIdentifierStart(c);
+    }
+
+    public int lex(CharSequence line, int mode, LineTokens tokens) {
+        return lex(line, 0, line.length(), mode, tokens);
+    }
+
+    public int lex(CharSequence line, int from, int to, int mode, LineTokens tokens) {
+        tokens.clear();
+        int state = roots[mode];
+        int tokenStart = from;
+        int identifier = -1;
+        for (int i = from; i < to; ++i) {
+            char c = line.charAt(i);
+            if (mode == DEFAULT_STATE) {
+                if (identifier == -1) {
+                    if ((identifiers) && (Character.isJavaIdentifierStart(c))) {
+                        identifier = i;
+                    }
+                } else if (!Character.isJavaIdentifierPart(c)) {
+                    addIdentifier(line, identifier, i, tokens);
+                    identifier = -1;
+                }
+                int code = BRACKETS.indexOf(c);
+                if (code != -1) {
+                    tokens.addBracket((i << 3) | code);
+                }
+            }
+            state = next[state * classesSize + classes[c]];
+            int action = actions[state];
+            if ((action == NONE) || (action == ESCAPE)) {
+                continue;
+            }
+            int start = i - lengths[state] + 1;
+            if ((identifier != -1) && (mode == DEFAULT_STATE)) {
+                if (identifier < start) {
+                    addIdentifier(line, identifier, start, tokens);
+                }
+                identifier = -1;
+            }
+            if (action == LINE_COMMENT) {
+                tokens.add(LineTokens.COMMENT, start, to);
+                tokens.setLineComment(start);
+                tokens.setState(DEFAULT_STATE);
+                return DEFAULT_STATE;
+            }
+            if (action == BLOCK_END) {
+                tokens.add(LineTokens.COMMENT, tokenStart, i + 1);
+            } else if (action == QUOTE_END) {
+                tokens.add(LineTokens.LITERAL, tokenStart, i + 1);
+            } else {
+                tokenStart = start;
+            }
+            mode = targets[state];
+            state = roots[mode];
+        }
+        if (identifier != -1) {
+            addIdentifier(line, identifier, to, tokens);
+        }
+        if (mode == BLOCK_COMMENT_STATE) {
+            tokens.add(LineTokens.COMMENT, tokenStart, to);
+        } else if (mode != DEFAULT_STATE) {
+            tokens.add(LineTokens.LITERAL, tokenStart, to);
+            if (actions[state] != ESCAPE) {
+                mode = DEFAULT_STATE;
+            }
+        }
+        tokens.setState(mode);
+        return mode;
+    }
+
+    public int[] checkpoints(CharSequence line, int mode, int interval) {
+        int length = line.length();
+        int[] checkpoints = new int[2 * (length / interval + 1)];
+        checkpoints[1] = mode;
+        int size = 1;
+        int state = roots[mode];
+        for (int i = 0; i < length; ++i) {
+            char c = line.charAt(i);
+            if ((i >= size * interval) && (state == roots[mode]) && ((mode != DEFAULT_STATE) || (!identifiers)
+                    || (!Character.isJavaIdentifierPart(line.charAt(i - 1))))) {
+                checkpoints[2 * size] = i;
+                checkpoints[2 * size + 1] = mode;
+                size += 1;
+            }
+            state = next[state * classesSize + classes[c]];
+            int action = actions[state];
+            if ((action == NONE) || (action == ESCAPE)) {
+                continue;
+            }
+            if (action == LINE_COMMENT) {
+                break;
+            }
+            mode = targets[state];
+            state = roots[mode];
+        }
+        return Arrays.copyOf(checkpoints, 2 * size);
+    }
+
+    private void addIdentifier(CharSequence line, int start, int end, LineTokens tokens) {
+        tokens.add(keywords.contains(line, start, end) ? LineTokens.KEYWORD : LineTokens.IDENTIFIER, start, end);
+    }
+
+    private class Automaton {
+        private final int[] roots;
+        private final List<int[]> children = new ArrayList<>();
+        private final List<int[]> outputs = new ArrayList<>();
+
+        private Automaton(int modesSize) {
+            roots = new int[modesSize];
+            for (int mode = 0; mode < modesSize; ++mode) {
+                roots[mode] = newNode();
+            }
+        }
+
+        private void add(int mode, String pattern, int action, int target) {
+            if (pattern == null) {
+                return;
+            }
+            int node = roots[mode];
+            for (int i = 0; i < pattern.length(); ++i) {
+                int c = classes[pattern.charAt(i)];
+                if (children.get(node)[c] == -1) {
+                    children.get(node)[c] = newNode();
+                }
+                node = children.get(node)[c];
+            }
+            outputs.set(node, new int[]{action, pattern.length(), target});
+        }
+
+        private int newNode() {
+            int[] links = new int[classesSize];
+            Arrays.fill(links, -1);
+            children.add(links);
+            outputs.add(null);
+            return children.size() - 1;
+        }
+
+        private void compile() {
+            int[] fail = new int[children.size()];
+            for (int root : roots) {
+                Deque<Integer> queue = new ArrayDeque<>();
+                fail[root] = root;
+                queue.add(root);
+                while (!queue.isEmpty()) {
+                    int node = queue.poll();
+                    int[] output = outputs.get(node) != null ? outputs.get(node) : outputs.get(fail[node]);
+                    if (output != null) {
+                        outputs.set(node, output);
+                        actions[node] = output[0];
+                        lengths[node] = output[1];
+                        targets[node] = output[2];
+                    }
+                    for (int c = 0; c < classesSize; ++c) {
+                        int child = children.get(node)[c];
+                        if (child == -1) {
+                            next[node * classesSize + c] = node == root ? root : next[fail[node] * classesSize + c];
+                        } else {
+                            fail[child] = node == root ? root : next[fail[node] * classesSize + c];
+                            next[node * classesSize + c] = child;
+                            queue.add(child);
+                        }
+                    }
+                }
+            }
+            for (int node = 0; node < actions.length; ++node) {
+                if (actions[node] == ESCAPE) {
+                    int root = roots[targets[node]];
+                    Arrays.fill(next, node * classesSize, (node + 1) * classesSize, root);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.aomatveev.texteditor.utilities;
+
+import com.aomatveev.texteditor.model.LineIndex;
+import com.aomatveev.texteditor.model.TextStore;
+
+import javax.swing.*;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+public abstract class Indexer<T extends TextStore> extends SwingWorker<T, Void> {
+
+    private File indexFile;
+    private volatile T createdStore;
+
+    public Indexer(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+        T store = null;
+        try {
+            LineIndex index = new LineIndex(channel, Charset.defaultCharset());
+            long fileSize = Math.max(index.getFileSize(), 1);
+            while ((!isCancelled()) && (index.scanNextWindow())) {
+                setProgress((int) (index.getScannedBytes() * 100 / fileSize));
+            }
+            if (!isCancelled()) {
+                store = createStore(index);
+                createdStore = store;
+                if (isCancelled()) {
+                    store.close();
+                }
+            }
+            return store;
+        } finally {
+            if (store == null) {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    protected void done() {
+        try {
+            show(get());
+        } catch (CancellationException e) {
+            if (createdStore != null) {
+                createdStore.close();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    protected abstract T createStore(LineIndex index);
+
+    protected abstract void show(T store);
+}
@@ -1,39 +1,51 @@
 package com.aomatveev.texteditor.utilities;
 
 import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.model.DocumentContent;
+import com.aomatveev.texteditor.syntax.AbstractSyntax;
 
 import javax.swing.*;
 import java.io.*;
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
-public class Loader extends SwingWorker<Void, String> {
+public class Loader extends SwingWorker<DocumentContent, Void> {
 
     private static final int ONE_MB = 1024 * 1024;
 
     private File loadFile;
     private SimpleTextComponent simpleTextComponent;
+    private AbstractSyntax syntax;
 
-    public Loader(File loadFile, SimpleTextComponent simpleTextComponent) {
+    public Loader(File loadFile, SimpleTextComponent simpleTextComponent, AbstractSyntax syntax) {
         this.loadFile = loadFile;
         this.simpleTextComponent = simpleTextComponent;
+        this.syntax = syntax;
     }
 
     @Override
-    protected Void doInBackground() throws Exception {
+    protected DocumentContent doInBackground() throws Exception {
+        DocumentContent content = new DocumentContent();
         char[] buf = new char[ONE_MB];
-        try (BufferedReader reader = new BufferedReader(new FileReader(loadFile))) {
+        long fileSize = Math.max(loadFile.length(), 1);
+        try (FileInputStream in = new FileInputStream(loadFile);
+             Reader reader = new InputStreamReader(in)) {
             int read;
-            while ((read = reader.read(buf)) != -1) {
-                publish(new String(buf, 0, read));
+            while ((!isCancelled()) && ((read = reader.read(buf)) != -1)) {
+                content.append(buf, 0, read);
+                setProgress((int) Math.min(100, in.getChannel().position() * 100 / fileSize));
             }
         }
-        return null;
+        return content;
     }
 
     @Override
-    protected void process(List<String> chunks) {
-        for (String chunk : chunks) {
-            simpleTextComponent.append(chunk);
+    protected void done() {
+        try {
+            simpleTextComponent.load(get(), syntax);
+        } catch (CancellationException ignored) {
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println(e.getMessage());
         }
     }
 }
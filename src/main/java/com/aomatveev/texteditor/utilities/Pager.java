@@ -0,0 +1,32 @@
+package com.aomatveev.texteditor.utilities;
+
+import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.model.LineIndex;
+import com.aomatveev.texteditor.model.PagedTextStore;
+import com.aomatveev.texteditor.syntax.AbstractSyntax;
+
+import java.io.File;
+
+public class Pager extends Indexer<PagedTextStore> {
+
+    private SimpleTextComponent simpleTextComponent;
+    private AbstractSyntax syntax;
+    private long memoryBudget;
+
+    public Pager(File pageFile, SimpleTextComponent simpleTextComponent, AbstractSyntax syntax, long memoryBudget) {
+        super(pageFile);
+        this.simpleTextComponent = simpleTextComponent;
+        this.syntax = syntax;
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    protected PagedTextStore createStore(LineIndex index) {
+        return new PagedTextStore(index, index.getCharset(), memoryBudget);
+    }
+
+    @Override
+    protected void show(PagedTextStore store) {
+        simpleTextComponent.page(store, syntax);
+    }
+}
@@ -1,24 +1,161 @@
 package com.aomatveev.texteditor.utilities;
 
+import com.aomatveev.texteditor.model.TextSnapshot;
+
 import javax.swing.*;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Saver extends SwingWorker<Void, Void> {
-    private File saveFile;
-    private String data;
 
-    public Saver(File saveFile, String data) {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final ArrayDeque<ByteBuffer> BUFFERS = new ArrayDeque<>();
+
+    private final File saveFile;
+    private final TextSnapshot snapshot;
+    private final Charset charset;
+    private final boolean sync;
+
+    public Saver(File saveFile, TextSnapshot snapshot) {
+        this(saveFile, snapshot, Charset.defaultCharset(), false);
+    }
+
+    public Saver(File saveFile, TextSnapshot snapshot, Charset charset, boolean sync) {
         this.saveFile = saveFile;
-        this.data = data;
+        this.snapshot = snapshot;
+        this.charset = charset;
+        this.sync = sync;
     }
 
     @Override
     protected Void doInBackground() throws Exception {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(saveFile))) {
-            pw.print(data);
+        Path target = saveFile.toPath().toAbsolutePath();
+        Path temp = createTemp(target);
+        try {
+            copyPermissions(target, temp);
+            if (write(temp)) {
+                move(temp, target);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
         return null;
     }
+
+    @Override
+    protected void done() {
+        try {
+            get();
+        } catch (CancellationException ignored) {
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(null, "Cannot save " + saveFile.getName() + ": " + cause.getMessage(),
+                    "Save", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private boolean write(Path path) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer bytes = acquireBuffer();
+        long consumed = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Reader reader = snapshot.openReader()) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                if (isCancelled()) {
+                    return false;
+                }
+                endOfInput = reader.read(chars) == -1;
+                chars.flip();
+                consumed += chars.remaining();
+                while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+                    drain(channel, bytes);
+                }
+                consumed -= chars.remaining();
+                chars.compact();
+                setProgress((int) Math.min(100, consumed * 100 / Math.max(snapshot.length(), 1)));
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                drain(channel, bytes);
+            }
+            drain(channel, bytes);
+            if (sync) {
+                channel.force(true);
+            }
+        } finally {
+            releaseBuffer(bytes);
+        }
+        return true;
+    }
+
+    private static Path createTemp(Path target) throws IOException {
+        while (true) {
+            Path temp = target.resolveSibling("." + target.getFileName() + "."
+                    + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException ignored) {
+            }
+        }
+    }
+
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        if (!Files.exists(source)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private static ByteBuffer acquireBuffer() {
+        synchronized (BUFFERS) {
+            ByteBuffer buffer = BUFFERS.poll();
+            return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        synchronized (BUFFERS) {
+            BUFFERS.push(buffer);
+        }
+    }
 }
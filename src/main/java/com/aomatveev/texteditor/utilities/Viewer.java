@@ -0,0 +1,30 @@
+package com.aomatveev.texteditor.utilities;
+
+import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.model.LineIndex;
+import com.aomatveev.texteditor.model.MappedTextStore;
+import com.aomatveev.texteditor.syntax.AbstractSyntax;
+
+import java.io.File;
+
+public class Viewer extends Indexer<MappedTextStore> {
+
+    private SimpleTextComponent simpleTextComponent;
+    private AbstractSyntax syntax;
+
+    public Viewer(File viewFile, SimpleTextComponent simpleTextComponent, AbstractSyntax syntax) {
+        super(viewFile);
+        this.simpleTextComponent = simpleTextComponent;
+        this.syntax = syntax;
+    }
+
+    @Override
+    protected MappedTextStore createStore(LineIndex index) {
+        return new MappedTextStore(index, index.getCharset());
+    }
+
+    @Override
+    protected void show(MappedTextStore store) {
+        simpleTextComponent.view(store, syntax);
+    }
+}
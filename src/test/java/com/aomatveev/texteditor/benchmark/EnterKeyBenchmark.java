@@ -0,0 +1,35 @@
+package com.aomatveev.texteditor.benchmark;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+
+public class EnterKeyBenchmark {
+
+    private static final int LINES = 1_000_000;
+    private static final int ITERATIONS = 10_000;
+
+    public static void main(String[] args) {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        TestUtilities.initDocument(document, text.toString());
+
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("first line: %d ns/op%n", measure(document, true));
+            System.out.printf("last line:  %d ns/op%n", measure(document, false));
+        }
+    }
+
+    private static long measure(SimpleDocument document, boolean firstLine) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            int lineIndex = firstLine ? 0 : document.linesSize() - 1;
+            document.moveCaret(lineIndex, 0);
+            document.insertNewLine();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
@@ -0,0 +1,41 @@
+package com.aomatveev.texteditor.benchmark;
+
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import com.aomatveev.texteditor.syntax.LexedLines;
+import com.aomatveev.texteditor.syntax.ParallelLexer;
+import com.aomatveev.texteditor.syntax.SyntaxDefinition;
+import com.aomatveev.texteditor.syntax.SyntaxLexer;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class InitialHighlightBenchmark {
+
+    private static final int LINES = 1_000_000;
+
+    public static void main(String[] args) {
+        String[] lines = new String[LINES];
+        for (int i = 0; i < LINES; ++i) {
+            lines[i] = i % 50 == 0 ? "    /* block " + i : (i % 50 == 3 ? "    */ int x = f(\"s\");" :
+                    "    public static int value" + i + " = compute(a[i], b); // note");
+        }
+        SyntaxLexer lexer = new SyntaxLexer(new SyntaxDefinition()
+                .identifiers(true)
+                .keywords(new JavaSyntax().getKeywords().toArray(new String[0]))
+                .lineComment("//")
+                .blockComment("/*", "*/")
+                .quotes("\"'")
+                .escape('\\'));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            for (int round = 0; round < 3; ++round) {
+                long start = System.nanoTime();
+                LexedLines result = ParallelLexer.lex(lexer, lines, SyntaxLexer.DEFAULT_STATE, pool);
+                System.out.printf("%d threads: %d ms (%d lines)%n", parallelism,
+                        (System.nanoTime() - start) / 1_000_000, result.size());
+            }
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aomatveev.texteditor.benchmark;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeywordsBenchmark {
+
+    private static final int LINES = 10_000;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; ++i) {
+            text.append("    public static final int value").append(i)
+                    .append(" = (int) compute(this, new Object[]{null}); // return\n");
+        }
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new JavaSyntax());
+        List<String> keywords = new JavaSyntax().getKeywords();
+
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("split:   %d ns/line%n", measure(document, keywords, true));
+            System.out.printf("table:   %d ns/line%n", measure(document, keywords, false));
+        }
+    }
+
+    private static long measure(SimpleDocument document, List<String> keywords, boolean split) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; ++round) {
+            for (int i = 0; i < LINES; ++i) {
+                found += split ? splitKeywordsBounds(document, keywords, i).size() : document.getKeywordsBounds(i).size();
+            }
+        }
+        long time = (System.nanoTime() - start) / ((long) ROUNDS * LINES);
+        if (found < 0) {
+            System.out.println(found);
+        }
+        return time;
+    }
+
+    private static List<Pair<Integer, Integer>> splitKeywordsBounds(SimpleDocument document, List<String> keywords,
+                                                                    int lineIndex) {
+        List<Pair<Integer, Integer>> bounds = new ArrayList<>();
+        String[] words = ("! " + document.getLine(lineIndex)).split(" ");
+        int start = 0;
+        for (int i = 1; i < words.length; ++i) {
+            if (keywords.contains(words[i])) {
+                bounds.add(new Pair<>(start, start + words[i].length()));
+            }
+            start += words[i].length() + 1;
+        }
+        return bounds;
+    }
+}
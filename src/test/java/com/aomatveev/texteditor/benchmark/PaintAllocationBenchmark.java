@@ -0,0 +1,47 @@
+package com.aomatveev.texteditor.benchmark;
+
+import com.aomatveev.texteditor.gui.SimpleTextComponent;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+public class PaintAllocationBenchmark {
+
+    private static final int LINES = 200;
+    private static final int FRAMES = 2_000;
+
+    public static void main(String[] args) {
+        SimpleTextComponent component = new SimpleTextComponent();
+        component.setBorder(new EmptyBorder(5, 5, 5, 5));
+        component.setSyntax(new JavaSyntax());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; ++i) {
+            text.append("    int value").append(i).append(" = compute(\"s\", a[i]); /* c */ // tail\n");
+        }
+        component.append(text.toString());
+        component.setSize(800, 60 * component.getLineSpacing());
+        BufferedImage image = new BufferedImage(800, 60 * component.getLineSpacing(), BufferedImage.TYPE_INT_RGB);
+
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("plain frame:    %d bytes%n", measure(component, image));
+        }
+        component.selectAll();
+        for (int round = 0; round < 3; ++round) {
+            System.out.printf("selected frame: %d bytes%n", measure(component, image));
+        }
+    }
+
+    private static long measure(SimpleTextComponent component, BufferedImage image) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < FRAMES; ++i) {
+            Graphics graphics = image.getGraphics();
+            component.paint(graphics);
+            graphics.dispose();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - start) / FRAMES;
+    }
+}
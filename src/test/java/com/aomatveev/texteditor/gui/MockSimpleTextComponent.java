@@ -3,4 +3,7 @@ package com.aomatveev.texteditor.gui;
 public class MockSimpleTextComponent extends SimpleTextComponent {
     @Override
     public void updateView() {}
+
+    @Override
+    public void updateView(int startLine, int endLine) {}
 }
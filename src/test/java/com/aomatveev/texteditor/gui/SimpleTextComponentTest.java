@@ -0,0 +1,165 @@
+package com.aomatveev.texteditor.gui;
+
+import com.aomatveev.texteditor.model.LineIndex;
+import com.aomatveev.texteditor.model.PagedTextStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SimpleTextComponentTest extends Assert {
+
+    private List<Rectangle> repainted;
+    private SimpleTextComponent component;
+
+    @Before
+    public void setUp() {
+        repainted = new ArrayList<>();
+        component = new SimpleTextComponent() {
+            @Override
+            public void repaint(long tm, int x, int y, int width, int height) {
+                if (repainted != null) {
+                    repainted.add(new Rectangle(x, y, width, height));
+                }
+            }
+
+            @Override
+            void scheduleReflow() {
+            }
+        };
+        component.setSize(800, 100 * component.getLineSpacing());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 99; ++i) {
+            text.append("line\n");
+        }
+        component.append(text.toString());
+        component.updateView();
+        repainted.clear();
+    }
+
+    @Test
+    public void typingRepaintsCaretLineOnly() {
+        component.append("x");
+        Rectangle union = union();
+        assertTrue(union.height <= 3 * component.getLineSpacing());
+        assertTrue(union.contains(0, 99 * component.getLineSpacing()));
+    }
+
+    @Test
+    public void newLineRepaintsShiftedRegion() {
+        component.append("\n");
+        Rectangle union = union();
+        assertTrue(union.y + union.height >= component.getHeight());
+        assertTrue(union.y >= 97 * component.getLineSpacing());
+    }
+
+    @Test
+    public void wrappedRowsFollowEdits() {
+        component.setBorder(new EmptyBorder(0, 0, 0, 0));
+        component.setSize(200, 120 * component.getLineSpacing());
+        component.setLineWrap(true);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; ++i) {
+            text.append("word").append(i).append(' ');
+        }
+        component.append(text.toString());
+        reflow();
+        int rowsSize = 100;
+        while (component.getSliceAtRow(rowsSize).start > 0) {
+            assertEquals(99, component.getFoundLine());
+            rowsSize += 1;
+        }
+        assertTrue(rowsSize > 101);
+        assertEquals(100, component.getFoundLine());
+
+        component.append("\nlast");
+        component.getSliceAtRow(rowsSize);
+        assertEquals(100, component.getFoundLine());
+        component.setLineWrap(false);
+        component.getSliceAtRow(101);
+        assertEquals(101, component.getFoundLine());
+    }
+
+    @Test
+    public void rowsAreReflowedOutsidePaint() {
+        component.setBorder(new EmptyBorder(0, 0, 0, 0));
+        component.setSize(200, 10 * component.getLineSpacing());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; ++i) {
+            text.append("word").append(i).append(' ');
+        }
+        component.append(text.append('\n').toString());
+        component.setLineWrap(true);
+
+        assertTrue(component.isReflowPending());
+        paint();
+        assertTrue(component.isReflowPending());
+        reflow();
+        assertFalse(component.isReflowPending());
+        int rowsSize = 100;
+        while (component.getSliceAtRow(rowsSize).start > 0) {
+            rowsSize += 1;
+        }
+        assertTrue(rowsSize > 101);
+        assertEquals(100, component.getFoundLine());
+        paint();
+        assertFalse(component.isReflowPending());
+    }
+
+    @Test
+    public void pagedRowsAreReflowedNearView() throws IOException {
+        File file = File.createTempFile("paged", ".txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        LineIndex index = new LineIndex(FileChannel.open(file.toPath(), StandardOpenOption.READ), StandardCharsets.UTF_8);
+        while (index.scanNextWindow()) {
+            assertTrue(index.getScannedBytes() <= index.getFileSize());
+        }
+        PagedTextStore store = new PagedTextStore(index, StandardCharsets.UTF_8, PagedTextStore.DEFAULT_MEMORY_BUDGET);
+        component.setBorder(new EmptyBorder(0, 0, 0, 0));
+        component.page(store);
+        component.setLineWrap(true);
+        paint();
+
+        assertFalse(component.isReflowPending());
+        assertEquals(1, store.getMisses());
+        store.close();
+        assertTrue(file.delete());
+    }
+
+    private void reflow() {
+        while (component.isReflowPending()) {
+            component.reflowStep();
+        }
+    }
+
+    private void paint() {
+        BufferedImage image = new BufferedImage(component.getWidth(), component.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        component.paint(graphics);
+        graphics.dispose();
+    }
+
+    private Rectangle union() {
+        Rectangle union = new Rectangle(repainted.get(0));
+        for (Rectangle rectangle : repainted) {
+            union.add(rectangle);
+        }
+        return union;
+    }
+}
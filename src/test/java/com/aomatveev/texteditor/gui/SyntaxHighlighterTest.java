@@ -0,0 +1,136 @@
+package com.aomatveev.texteditor.gui;
+
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+import com.aomatveev.texteditor.utilities.Utilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+
+public class SyntaxHighlighterTest extends Assert {
+
+    private SimpleDocument document;
+    private SyntaxHighlighter highlighter;
+
+    @Before
+    public void setUp() {
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, "int a = f(b);\n// comment\nint c;");
+        document.setSyntax(new JavaSyntax());
+        document.moveCaret(2, 0);
+        highlighter = new SyntaxHighlighter();
+    }
+
+    @Test
+    public void unchangedLinesAreReused() {
+        LineSlice first = slice(0);
+        assertSame(first, slice(0));
+        assertEquals(1, highlighter.cachedLinesSize());
+    }
+
+    @Test
+    public void editedLinesAreRecomputed() {
+        LineSlice first = slice(1);
+        document.moveCaret(1, 2);
+        document.insertText('!');
+        document.moveCaret(2, 0);
+        LineSlice second = slice(1);
+        assertNotSame(first, second);
+        assertEquals("//! comment".length(), second.end);
+        assertEquals("//! comment".length(), second.layout.getCharacterCount());
+    }
+
+    @Test
+    public void layoutsAreReusedUntilEdit() {
+        TextLayout layout = slice(1).layout;
+        assertSame(layout, slice(1).layout);
+        document.moveCaret(1, 0);
+        assertSame(layout, slice(1).layout);
+        document.insertText('x');
+        assertNotSame(layout, slice(1).layout);
+    }
+
+    @Test
+    public void bracketsAreNotCached() {
+        LineSlice plain = slice(0);
+        document.moveCaret(0, 9);
+        assertNotSame(plain, slice(0));
+        AttributedCharacterIterator iterator = highlighter.getAttributedString(0, document).getIterator();
+        iterator.setIndex(11);
+        assertNotNull(iterator.getAttribute(TextAttribute.FOREGROUND));
+        document.moveCaret(2, 0);
+        assertSame(plain, slice(0));
+    }
+
+    @Test
+    public void rowSlicesCoverWrappedLine() {
+        int width = (int) slice(0).layout.getAdvance() / 2;
+        int rows = highlighter.getRowsSize(0, document, width);
+        assertTrue(rows > 1);
+        int start = 0;
+        for (int row = 0; row < rows; ++row) {
+            LineSlice slice = highlighter.getRowSlice(0, document, row, width);
+            assertEquals(start, slice.start);
+            assertSame(slice, highlighter.getRowSlice(0, document, row, width));
+            start = slice.end;
+        }
+        assertEquals("int a = f(b);".length(), start);
+    }
+
+    @Test
+    public void bracketsAreLayeredOverTokenRuns() {
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, "f(\"(\") /* ( */ int");
+        document.setSyntax(new JavaSyntax());
+        document.moveCaret(0, 1);
+        AttributedCharacterIterator iterator = highlighter.getAttributedString(0, document).getIterator();
+
+        assertEquals(Utilities.IDENTIFIERS_COLOR, colorAt(iterator, 0));
+        assertEquals(Utilities.BRACKET_COLOR, colorAt(iterator, 1));
+        assertEquals(Utilities.LITERAL_COLOR, colorAt(iterator, 3));
+        assertEquals(Utilities.BRACKET_COLOR, colorAt(iterator, 5));
+        assertNull(colorAt(iterator, 6));
+        assertEquals(Utilities.COMMENT_COLOR, colorAt(iterator, 10));
+        assertEquals(Utilities.KEYWORD_COLOR, colorAt(iterator, 15));
+        iterator.setIndex(2);
+        assertEquals(2, iterator.getRunStart(TextAttribute.FOREGROUND));
+        assertEquals(5, iterator.getRunLimit(TextAttribute.FOREGROUND));
+    }
+
+    @Test
+    public void longLinesAreSlicedToVisibleWindow() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 50000; ++i) {
+            text.append("int a").append(i).append(" = f(\"s\"); ");
+        }
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, text.append("\n").toString());
+        document.setSyntax(new JavaSyntax());
+        document.moveCaret(1, 0);
+
+        LineSlice slice = highlighter.getLineSlice(0, document, 100000, 800);
+        assertTrue(slice.start > 0);
+        assertTrue(slice.end - slice.start < 2000);
+        assertEquals(slice.end - slice.start, slice.layout.getCharacterCount());
+        AttributedString prefix = new AttributedString(text.substring(0, slice.start), Utilities.attributesMap);
+        double x = new TextLayout(prefix.getIterator(), Utilities.DEFAULT_FRC).getAdvance();
+        assertEquals(x, slice.x, 1);
+        assertTrue(slice.x <= 100000);
+        assertSame(slice, highlighter.getLineSlice(0, document, 100010, 800));
+    }
+
+    private LineSlice slice(int lineIndex) {
+        return highlighter.getLineSlice(lineIndex, document, 0, 1000);
+    }
+
+    private static Object colorAt(AttributedCharacterIterator iterator, int index) {
+        iterator.setIndex(index);
+        return iterator.getAttribute(TextAttribute.FOREGROUND);
+    }
+}
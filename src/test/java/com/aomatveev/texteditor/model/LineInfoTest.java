@@ -0,0 +1,23 @@
+package com.aomatveev.texteditor.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineInfoTest extends Assert {
+
+    @Test
+    public void commentMembership() {
+        LineInfo info = new LineInfo();
+        assertFalse(info.isCommented(0));
+
+        info.textComments = new int[]{2, 5, 8, 9, 12, 20};
+        info.lineCommentIndex = 25;
+        boolean[] expected = new boolean[30];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = ((i >= 2) && (i < 5)) || (i == 8) || ((i >= 12) && (i < 20)) || (i >= 25);
+        }
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(String.valueOf(i), expected[i], info.isCommented(i));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.aomatveev.texteditor.model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LineTreeTest extends Assert {
+
+    private LineTree tree;
+
+    @Before
+    public void setUp() {
+        tree = new LineTree();
+    }
+
+    @Test
+    public void addAndGet() {
+        LineInfo first = new LineInfo();
+        LineInfo second = new LineInfo();
+        tree.add(first);
+        tree.add(second);
+        assertEquals(2, tree.size());
+        assertSame(first, tree.get(0));
+        assertSame(second, tree.get(1));
+    }
+
+    @Test
+    public void removeLastLine() {
+        tree.add(new LineInfo());
+        tree.remove(0);
+        assertEquals(0, tree.size());
+        LineInfo info = new LineInfo();
+        tree.insert(0, info);
+        assertSame(info, tree.get(0));
+    }
+
+    @Test
+    public void randomEditsMatchList() {
+        Random random = new Random(42);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            if ((!expected.isEmpty()) && (random.nextInt(3) == 0)) {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                tree.remove(index);
+            } else {
+                int index = random.nextInt(4) == 0 ? 0 : random.nextInt(expected.size() + 1);
+                LineInfo info = new LineInfo();
+                expected.add(index, info);
+                tree.insert(index, info);
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), tree.get(i));
+        }
+    }
+
+    @Test
+    public void sparseRandomEditsMatchList() {
+        tree = new LineTree(5000);
+        Random random = new Random(7);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            expected.add(null);
+        }
+        for (int i = 0; i < 20000; ++i) {
+            int operation = random.nextInt(3);
+            if ((!expected.isEmpty()) && (operation == 0)) {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                tree.remove(index);
+            } else if ((!expected.isEmpty()) && (operation == 1)) {
+                int index = random.nextInt(expected.size());
+                LineInfo info = new LineInfo();
+                expected.set(index, info);
+                tree.set(index, info);
+            } else {
+                int index = random.nextInt(expected.size() + 1);
+                LineInfo info = new LineInfo();
+                expected.add(index, info);
+                tree.insert(index, info);
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        int materialized = 0;
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), tree.get(i));
+            if (expected.get(i) != null) {
+                materialized += 1;
+            }
+        }
+        int[] visited = new int[1];
+        tree.forEach(info -> visited[0] += 1);
+        assertEquals(materialized, visited[0]);
+    }
+
+    @Test
+    public void rangeVisitSkipsLazyLines() {
+        tree = new LineTree(10000);
+        Random random = new Random(3);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            expected.add(null);
+        }
+        for (int i = 0; i < 500; ++i) {
+            int index = random.nextInt(expected.size());
+            LineInfo info = new LineInfo();
+            expected.set(index, info);
+            tree.set(index, info);
+        }
+        for (int i = 0; i < 100; ++i) {
+            int from = random.nextInt(expected.size());
+            int to = from + random.nextInt(expected.size() - from);
+            List<LineInfo> visited = new ArrayList<>();
+            tree.forEach(from, to, visited::add);
+            List<LineInfo> materialized = new ArrayList<>();
+            for (int j = from; j <= to; ++j) {
+                if (expected.get(j) != null) {
+                    materialized.add(expected.get(j));
+                }
+            }
+            assertEquals(materialized, visited);
+        }
+    }
+
+    @Test
+    public void rangeRemovalsMatchList() {
+        tree = new LineTree(20000);
+        Random random = new Random(11);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            expected.add(null);
+        }
+        for (int i = 0; i < 2000; ++i) {
+            int index = random.nextInt(expected.size() + 1);
+            if (random.nextBoolean()) {
+                int to = Math.min(expected.size(), index + random.nextInt(300));
+                expected.subList(index, to).clear();
+                tree.removeRange(index, to);
+            } else {
+                LineInfo info = new LineInfo();
+                expected.add(index, info);
+                tree.insert(index, info);
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), tree.get(i));
+        }
+    }
+
+    @Test
+    public void rowIndexMatchesScan() {
+        tree = new LineTree(3000);
+        Random random = new Random(13);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; ++i) {
+            expected.add(null);
+        }
+        for (int i = 0; i < 3000; ++i) {
+            int index = random.nextInt(expected.size() + 1);
+            LineInfo info = new LineInfo();
+            info.rows = 1 + random.nextInt(4);
+            if ((index < expected.size()) && (random.nextBoolean())) {
+                expected.set(index, info);
+                tree.set(index, info);
+            } else {
+                expected.add(index, info);
+                tree.insert(index, info);
+            }
+            if (random.nextInt(5) == 0) {
+                LineInfo changed = expected.get(random.nextInt(expected.size()));
+                if (changed != null) {
+                    changed.rows = 1 + random.nextInt(4);
+                    int line = expected.indexOf(changed);
+                    tree.refresh(line, line);
+                }
+            }
+        }
+        int row = 0;
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(row, tree.rowOf(i));
+            int rows = expected.get(i) == null ? 1 : expected.get(i).rows;
+            for (int r = 0; r < rows; ++r) {
+                assertEquals(i, tree.findLineAtRow(row + r));
+                assertEquals(row, tree.getFoundRow());
+            }
+            row += rows;
+        }
+        assertEquals(row, tree.rowsSize());
+        assertEquals(expected.size(), tree.findLineAtRow(row + 5));
+    }
+
+    @Test
+    public void bracketSearchMatchesScan() {
+        Random random = new Random(11);
+        List<LineInfo> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; ++i) {
+            LineInfo info = lexedLine(random);
+            expected.add(info);
+            tree.add(info);
+        }
+        for (int i = 0; i < 500; ++i) {
+            int index = random.nextInt(expected.size());
+            if (random.nextBoolean()) {
+                LineInfo info = lexedLine(random);
+                expected.add(index, info);
+                tree.insert(index, info);
+            } else {
+                expected.remove(index);
+                tree.remove(index);
+            }
+            index = random.nextInt(expected.size());
+            expected.get(index).setBrackets(lexedLine(random).brackets);
+            tree.refresh(index, index);
+        }
+        assertFalse(tree.hasUnlexedLines());
+        for (int i = 0; i < 200; ++i) {
+            int from = random.nextInt(expected.size());
+            int balance = 1 + random.nextInt(3);
+            assertEquals(scanClose(expected, from, balance), tree.findCloseBracketLine(from, 0, balance));
+            assertEquals(scanOpen(expected, from, balance), tree.findOpenBracketLine(from, 0, balance));
+        }
+        expected.get(0).resetSyntax();
+        tree.refresh(0, 0);
+        assertTrue(tree.hasUnlexedLines());
+    }
+
+    private static LineInfo lexedLine(Random random) {
+        int[] brackets = new int[random.nextInt(4)];
+        for (int i = 0; i < brackets.length; ++i) {
+            brackets[i] = (i << 3) | random.nextInt(6);
+        }
+        LineInfo info = new LineInfo();
+        info.lexerState = 0;
+        info.setBrackets(brackets);
+        return info;
+    }
+
+    private static int scanClose(List<LineInfo> lines, int from, int balance) {
+        for (int i = from; i < lines.size(); ++i) {
+            for (int bracket : lines.get(i).brackets) {
+                if ((bracket & 6) == 0) {
+                    balance += (bracket & 1) == 0 ? 1 : -1;
+                    if (balance == 0) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int scanOpen(List<LineInfo> lines, int from, int balance) {
+        for (int i = from; i >= 0; --i) {
+            int[] brackets = lines.get(i).brackets;
+            for (int j = brackets.length - 1; j >= 0; --j) {
+                if ((brackets[j] & 6) == 0) {
+                    balance += (brackets[j] & 1) == 0 ? -1 : 1;
+                    if (balance == 0) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,113 @@
+package com.aomatveev.texteditor.model;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.gui.SyntaxHighlighter;
+import com.aomatveev.texteditor.syntax.AbstractSyntax;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+public class MappedTextStoreTest extends Assert {
+
+    private File file;
+    private MappedTextStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("mapped", ".log");
+        Files.write(file.toPath(), "first line\n\nthird\ncaf\u00e9 au lait".getBytes(StandardCharsets.UTF_8));
+        LineIndex index = new LineIndex(FileChannel.open(file.toPath(), StandardOpenOption.READ), StandardCharsets.UTF_8);
+        while (index.scanNextWindow()) {
+            assertTrue(index.getScannedBytes() <= index.getFileSize());
+        }
+        store = new MappedTextStore(index, StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void decodesLines() {
+        assertEquals(4, store.linesSize());
+        assertEquals("first line", store.getLine(0).toString());
+        assertEquals("", store.getLine(1).toString());
+        assertEquals("third", store.getLine(2).toString());
+        assertEquals("caf\u00e9 au lait", store.getLine(3).toString());
+        assertEquals(12, store.lineLength(3));
+        assertEquals(12, store.getMaxLength());
+    }
+
+    @Test
+    public void snapshotsDecodeMappedBytes() {
+        assertEquals("first line\n\nthird\ncaf\u00e9 au lait", store.snapshot().toString());
+        assertEquals(30, store.snapshot().length());
+        assertEquals(16, store.snapshot(0, 6, 3, 4).length());
+        assertEquals("line\n\nthird\ncaf\u00e9", store.snapshot(0, 6, 3, 4).toString());
+        assertEquals("hi", store.snapshot(2, 1, 2, 3).toString());
+    }
+
+    @Test
+    public void maxLengthCountsDecodedChars() throws IOException {
+        for (String name : new String[]{"EUC-JP", "ISO-8859-1"}) {
+            Charset charset = Charset.forName(name);
+            Files.write(file.toPath(), "ab\n\u00e9\u00e8\u00ea\n".getBytes(charset));
+            LineIndex index = new LineIndex(FileChannel.open(file.toPath(), StandardOpenOption.READ), charset);
+            while (index.scanNextWindow()) {
+                assertTrue(index.isComplete());
+            }
+            MappedTextStore other = new MappedTextStore(index, charset);
+            assertEquals(name, "\u00e9\u00e8\u00ea", other.getLine(1).toString());
+            assertEquals(name, 3, other.getMaxLength());
+            other.close();
+        }
+    }
+
+    @Test
+    public void viewedDocumentIsReadOnly() {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        document.view(store);
+        assertTrue(document.isReadOnly());
+
+        document.moveCaret(2, 2);
+        document.insertText('a');
+        document.insertNewLine();
+        document.backspaceChar();
+        assertEquals("third", document.getLine(2).toString());
+        assertEquals(2, document.getCaretLineIndex());
+        assertEquals(2, document.getCaretCharIndex());
+    }
+
+    @Test
+    public void syntaxCanChangeWhileViewing() {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        document.view(store);
+        document.setSyntax(new JavaSyntax());
+
+        assertEquals(2, document.getIdentifiersBounds(0).size());
+        assertNotNull(document.getTokens(3, 0, 4, document.getCheckpoints(3)));
+        assertEquals(10, new SyntaxHighlighter().getLineSlice(0, document, 0, 1000).end);
+    }
+
+    @Test
+    public void viewInstallsGivenSyntax() {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        AbstractSyntax syntax = new JavaSyntax();
+        document.view(store, syntax);
+
+        assertSame(syntax, document.getSyntax());
+        assertEquals(2, document.getIdentifiersBounds(0).size());
+    }
+}
@@ -0,0 +1,234 @@
+package com.aomatveev.texteditor.model;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.primitives.Range;
+import com.aomatveev.texteditor.syntax.AbstractSyntax;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import com.aomatveev.texteditor.syntax.NoneSyntax;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+public class PagedTextStoreTest extends Assert {
+
+    private File file;
+    private String text;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; ++i) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append("line ").append(i);
+        }
+        text = sb.toString();
+        file = File.createTempFile("paged", ".txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void evictsCleanBlocksUnderBudget() throws IOException {
+        PagedTextStore store = open(100000);
+        assertEquals(5000, store.linesSize());
+        for (int i = 0; i < store.linesSize(); ++i) {
+            assertEquals("line " + i, store.getLine(i).toString());
+        }
+        assertEquals("line 0", store.getLine(0).toString());
+        assertEquals(6, store.getMisses());
+        assertTrue(store.getHits() > 4000);
+        assertTrue(store.getEvictions() > 0);
+        assertTrue(store.getLoadedBytes() <= store.getMemoryBudget());
+        store.close();
+    }
+
+    @Test
+    public void keepsModifiedBlocks() throws IOException {
+        PagedTextStore store = open(0);
+        store.insert(10, 4, " ten");
+        for (int i = 0; i < store.linesSize(); ++i) {
+            store.getLine(i);
+        }
+        assertEquals("line ten 10", store.getLine(10).toString());
+        store.close();
+    }
+
+    @Test
+    public void randomEditsMatchStringBuilder() throws IOException {
+        PagedTextStore store = open(50000);
+        StringBuilder expected = new StringBuilder(text);
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; ++i) {
+            String[] lines = expected.toString().split("\n", -1);
+            int line = random.nextInt(lines.length);
+            int ch = random.nextInt(lines[line].length() + 1);
+            int offset = offset(lines, line, ch);
+            if (random.nextInt(3) == 0) {
+                int endLine = Math.min(lines.length - 1, line + random.nextInt(1500));
+                int endCh = endLine == line ? ch + random.nextInt(lines[line].length() - ch + 1)
+                        : random.nextInt(lines[endLine].length() + 1);
+                expected.delete(offset, offset(lines, endLine, endCh));
+                store.delete(line, ch, endLine, endCh);
+            } else {
+                String insert = random.nextInt(50) == 0 ? repeat("x\n", 3000) : (random.nextBoolean() ? "ab\nc" : "y");
+                expected.insert(offset, insert);
+                store.insert(line, ch, insert);
+            }
+        }
+        assertEquals(expected.toString(), store.toString());
+        assertEquals(expected.toString(), read(store.snapshot()));
+        assertEquals(maxLength(expected.toString()), store.getMaxLength());
+        store.close();
+    }
+
+    @Test
+    public void snapshotsReadCleanBlocksFromFile() throws IOException {
+        PagedTextStore store = open(PagedTextStore.DEFAULT_MEMORY_BUDGET);
+        store.insert(2000, 4, " two thousand");
+        long misses = store.getMisses();
+        TextSnapshot snapshot = store.snapshot();
+        TextSnapshot selection = store.snapshot(10, 2, 4000, 3);
+        assertEquals(misses + 2, store.getMisses());
+
+        store.delete(0, 0, 4999, 0);
+        String expected = text.replace("line 2000\n", "line two thousand 2000\n");
+        assertEquals(expected, read(snapshot));
+        assertEquals(expected, snapshot.toString());
+        assertEquals(expected.length(), snapshot.length());
+        int start = expected.indexOf("line 10\n") + 2;
+        assertEquals(expected.substring(start, expected.indexOf("line 4000\n") + 3), read(selection));
+        store.close();
+    }
+
+    @Test
+    public void deletesDoNotDecodeRemovedBlocks() throws IOException {
+        PagedTextStore store = open(PagedTextStore.DEFAULT_MEMORY_BUDGET);
+        store.getLine(0);
+        store.getLine(4999);
+        store.delete(0, 2, 4999, 9);
+        assertEquals(2, store.getMisses());
+        assertEquals(1, store.linesSize());
+        assertEquals("li", store.getLine(0).toString());
+        assertEquals(2, store.getMaxLength());
+        store.close();
+    }
+
+    @Test
+    public void decodedLengthsReplaceScannedLengths() throws IOException {
+        Files.write(file.toPath(), new byte[]{'a', (byte) 0x80, 'b', '\n', 'c'});
+        PagedTextStore store = open(PagedTextStore.DEFAULT_MEMORY_BUDGET);
+        assertEquals("a\ufffdb", store.getLine(0).toString());
+        assertEquals(3, store.getMaxLength());
+        store.delete(0, 0, 1, 0);
+        assertEquals(1, store.getMaxLength());
+        store.close();
+    }
+
+    @Test
+    public void pagedDocumentIsEditable() throws IOException {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        document.page(open(PagedTextStore.DEFAULT_MEMORY_BUDGET));
+        assertFalse(document.isReadOnly());
+        assertEquals(9, document.getMaxLength());
+        document.moveCaret(4999, 4);
+        document.insertNewLine();
+        assertEquals(5001, document.linesSize());
+        assertEquals("line", document.getLine(4999).toString());
+        assertEquals(" 4999", document.getLine(5000).toString());
+        assertNotNull(document.getLineInfo(2500));
+    }
+
+    @Test
+    public void syntaxOnPagedDocumentStaysNearView() throws Exception {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        document.page(open(PagedTextStore.DEFAULT_MEMORY_BUDGET));
+        document.setSyntax(new JavaSyntax());
+        for (int i = 2500; i < 2520; ++i) {
+            document.getKeywordsBounds(i);
+        }
+        document.moveCaret(2510, 0);
+        document.insertText('/');
+        document.insertText('*');
+
+        assertEquals(Range.of(0, 11), document.getCommentsBounds(2510).get(0));
+        Field field = SimpleDocument.class.getDeclaredField("lineInfos");
+        field.setAccessible(true);
+        LineTree lineInfos = (LineTree) field.get(document);
+        for (int i = 0; i < document.linesSize(); ++i) {
+            if (lineInfos.get(i) != null) {
+                assertTrue(String.valueOf(i), (i == 0) || ((i >= 2499) && (i < 2520)));
+            }
+        }
+    }
+
+    @Test
+    public void pageInstallsGivenSyntax() throws IOException {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        AbstractSyntax syntax = new NoneSyntax();
+        document.page(open(PagedTextStore.DEFAULT_MEMORY_BUDGET), syntax);
+
+        assertSame(syntax, document.getSyntax());
+        assertFalse(document.hasBracketIndex());
+    }
+
+    private PagedTextStore open(long memoryBudget) throws IOException {
+        LineIndex index = new LineIndex(FileChannel.open(file.toPath(), StandardOpenOption.READ), StandardCharsets.UTF_8);
+        while (index.scanNextWindow()) {
+            assertTrue(index.getScannedBytes() <= index.getFileSize());
+        }
+        return new PagedTextStore(index, StandardCharsets.UTF_8, memoryBudget);
+    }
+
+    private static String read(TextSnapshot snapshot) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[1000];
+        try (Reader reader = snapshot.openReader()) {
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, count);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int maxLength(String text) {
+        int max = 0;
+        for (String line : text.split("\n", -1)) {
+            max = Math.max(max, line.length());
+        }
+        return max;
+    }
+
+    private static int offset(String[] lines, int line, int ch) {
+        int offset = 0;
+        for (int i = 0; i < line; ++i) {
+            offset += lines[i].length() + 1;
+        }
+        return offset + ch;
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
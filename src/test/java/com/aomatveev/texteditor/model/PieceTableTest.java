@@ -0,0 +1,90 @@
+package com.aomatveev.texteditor.model;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PieceTableTest extends Assert {
+
+    private PieceTable table;
+
+    @Before
+    public void setUp() {
+        table = new PieceTable();
+    }
+
+    @Test
+    public void emptyTable() {
+        assertEquals(0, table.length());
+        assertEquals(1, table.linesSize());
+        assertEquals("", table.getLine(0));
+    }
+
+    @Test
+    public void insertLines() {
+        table.insert(0, "first\nsecond\n\nfourth");
+        assertEquals(4, table.linesSize());
+        assertEquals("first", table.getLine(0));
+        assertEquals("second", table.getLine(1));
+        assertEquals("", table.getLine(2));
+        assertEquals("fourth", table.getLine(3));
+        assertEquals(6, table.lineLength(1));
+        assertEquals(14, table.lineStart(3));
+    }
+
+    @Test
+    public void insertIntoMiddle() {
+        table.insert(0, "paste\nstring");
+        table.insert(table.offset(1, 3), "\nnew ");
+        assertEquals("paste\nstr\nnew ing", table.toString());
+        assertEquals("new ing", table.getLine(2));
+    }
+
+    @Test
+    public void deleteAcrossPieces() {
+        table.insert(0, "paste\nstring");
+        table.insert(5, " more");
+        table.delete(2, 9);
+        assertEquals("pastring", table.toString());
+        assertEquals(1, table.linesSize());
+    }
+
+    @Test
+    public void typingExtendsLastPiece() {
+        for (char c : "typing".toCharArray()) {
+            table.insert(table.length(), String.valueOf(c));
+        }
+        assertEquals("typing", table.getLine(0));
+        assertEquals('y', table.charAt(1));
+    }
+
+    @Test
+    public void randomEditsMatchStringBuilder() {
+        Random random = new Random(17);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            if ((expected.length() > 0) && (random.nextInt(3) == 0)) {
+                int start = random.nextInt(expected.length());
+                int length = random.nextInt(Math.min(10, expected.length() - start) + 1);
+                expected.delete(start, start + length);
+                table.delete(start, length);
+            } else {
+                int offset = random.nextInt(expected.length() + 1);
+                String text = random.nextBoolean() ? "ab\nc" : "x";
+                expected.insert(offset, text);
+                table.insert(offset, text);
+            }
+        }
+        assertEquals(expected.toString(), table.toString());
+        String[] lines = expected.toString().split("\n", -1);
+        assertEquals(lines.length, table.linesSize());
+        int maxLength = 0;
+        for (int i = 0; i < lines.length; ++i) {
+            assertEquals(lines[i], table.getLine(i));
+            maxLength = Math.max(maxLength, lines[i].length());
+        }
+        assertEquals(maxLength, table.getMaxLength());
+    }
+}
@@ -1,6 +1,11 @@
 package com.aomatveev.texteditor.model;
 
 import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.primitives.IntRangeList;
+import com.aomatveev.texteditor.primitives.Range;
+import com.aomatveev.texteditor.syntax.HighlightingService;
+import com.aomatveev.texteditor.syntax.JavaSyntax;
+import com.aomatveev.texteditor.syntax.NoneSyntax;
 import com.aomatveev.texteditor.utilities.TestUtilities;
 import org.junit.Assert;
 import org.junit.Before;
@@ -10,11 +15,18 @@ import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
 
 import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 public class SimpleDocumentTest extends Assert {
 
@@ -226,6 +238,21 @@ public class SimpleDocumentTest extends Assert {
         assertEquals("ste\nstr", getSelectedText());
     }
 
+    @Test
+    public void selectedBoundsOfBackwardSelection() {
+        TestUtilities.initDocument(document, "paste\nlong string\nend");
+
+        document.moveSelectedCaret(2, 1);
+        document.moveCaret(0, 3);
+
+        assertEquals(Range.of(3, 5), document.getSelectedBounds(0));
+        assertEquals(Range.of(0, 11), document.getSelectedBounds(1));
+        assertEquals(Range.of(0, 1), document.getSelectedBounds(2));
+        document.moveCaret(2, 3);
+        assertEquals(Range.NONE, document.getSelectedBounds(0));
+        assertEquals(Range.of(1, 3), document.getSelectedBounds(2));
+    }
+
     @Test
     public void cutFromAnyPlace() {
         String pasteString = "paste\nstring";
@@ -270,11 +297,242 @@ public class SimpleDocumentTest extends Assert {
         }
     }
 
+    @Test
+    public void insertTextUpdatesViewOnce() {
+        int[] updates = new int[1];
+        document = new SimpleDocument(new MockSimpleTextComponent() {
+            @Override
+            public void updateView() {
+                updates[0] += 1;
+            }
+
+            @Override
+            public void updateView(int startLine, int endLine) {
+                updates[0] += 1;
+            }
+        });
+        updates[0] = 0;
+        TestUtilities.initDocument(document, "paste\nstring\n\nmany lines");
+        assertEquals(1, updates[0]);
+    }
+
+    @Test
+    public void nestedEditsCommitOnce() {
+        document.beginEdit();
+        document.insertText('a');
+        document.beginEdit();
+        document.insertNewLine();
+        document.insertText('b');
+        document.endEdit();
+        assertTrue(document.isInEdit());
+        document.endEdit();
+        assertFalse(document.isInEdit());
+        assertEquals("a\nb", document.toString());
+    }
+
+    @Test
+    public void loadContent() {
+        TestUtilities.initDocument(document, "old text");
+        DocumentContent content = new DocumentContent();
+        char[] chunk = "first\nsec".toCharArray();
+        content.append(chunk, 0, chunk.length);
+        chunk = "ond\n\nlast".toCharArray();
+        content.append(chunk, 0, chunk.length);
+
+        document.load(content);
+        assertEquals("first\nsecond\n\nlast", document.toString());
+        assertEquals(4, document.linesSize());
+        assertEquals(6, document.getMaxLength());
+        assertEquals(3, document.getCaretLineIndex());
+
+        document.insertNewLine();
+        assertEquals("first\nsecond\n\nlast\n", document.toString());
+    }
+
+    @Test
+    public void maxLengthFollowsEdits() {
+        StringBuilder text = new StringBuilder("first\n");
+        for (int i = 0; i < 3000; ++i) {
+            text.append('x');
+        }
+        DocumentContent content = new DocumentContent();
+        char[] chunk = text.append("\nthe last line of text").toString().toCharArray();
+        content.append(chunk, 0, chunk.length);
+        document.load(content);
+        assertEquals(3000, document.getMaxLength());
+
+        document.moveSelectedCaret(1, 0);
+        document.moveSelectedCaret(2, 0);
+        document.cut();
+        assertEquals(21, document.getMaxLength());
+
+        document.moveCaret(1, 8);
+        document.insertNewLine();
+        assertEquals(13, document.getMaxLength());
+        document.backspaceChar();
+        assertEquals(21, document.getMaxLength());
+
+        document.newDocument();
+        assertEquals(0, document.getMaxLength());
+    }
+
+    @Test
+    public void cutLargeSelection() {
+        StringBuilder text = new StringBuilder("keep /* start\n");
+        for (int i = 0; i < 200000; ++i) {
+            text.append("int a").append(i).append(";\n");
+        }
+        text.append("end */ int b;\nlast");
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new JavaSyntax());
+
+        document.moveSelectedCaret(0, 8);
+        document.moveSelectedCaret(200001, 0);
+        document.cut();
+        assertEquals("keep /* end */ int b;\nlast", document.toString());
+        assertEquals(2, document.linesSize());
+        assertEquals(Range.of(5, 14), document.getCommentsBounds(0).get(0));
+        assertEquals(0, document.getCommentsBounds(1).size());
+    }
+
+    @Test
+    public void snapshotIgnoresLaterEdits() throws IOException, UnsupportedFlavorException {
+        TestUtilities.initDocument(document, "first line\nsecond line\nthird");
+        document.moveSelectedCaret(0, 6);
+        document.moveSelectedCaret(2, 2);
+        assertEquals("line\nsecond line\nth", getSelectedText());
+        Transferable selection = new SnapshotSelection(document.getSnapshot());
+        Reader reader = (Reader) selection.getTransferData(SnapshotSelection.READER_FLAVOR);
+        document.cut();
+        document.insertText("changed\n");
+
+        assertEquals("first line\nsecond line\nthird", selection.getTransferData(DataFlavor.stringFlavor));
+        StringBuilder read = new StringBuilder();
+        char[] buffer = new char[3];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            read.append(buffer, 0, count);
+        }
+        assertEquals("first line\nsecond line\nthird", read.toString());
+    }
+
+    @Test
+    public void chunkedInsertMatchesText() throws IOException {
+        TestUtilities.initDocument(document, "head tail");
+        document.moveCaret(0, 5);
+        String text = "one\ntwo\n\nthree four\nfive\n";
+        document.insertText(new FilterReader(new StringReader(text)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        });
+        assertEquals("head one\ntwo\n\nthree four\nfive\ntail", document.toString());
+        assertEquals(5, document.getCaretLineIndex());
+        assertEquals(0, document.getCaretCharIndex());
+        assertEquals(10, document.getMaxLength());
+    }
+
+    @Test
+    public void largePasteIsLexedInBackground() throws IOException {
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        document.setHighlightingService(new HighlightingService(tasks::add, tasks::add));
+        TestUtilities.initDocument(document, "int a;");
+        document.setSyntax(new JavaSyntax());
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        StringBuilder text = new StringBuilder("/*\n");
+        for (int i = 0; i < 100000; ++i) {
+            text.append("int b").append(i).append(";\n");
+        }
+        document.moveCaret(0, 0);
+        document.insertText(new StringReader(text.toString()));
+
+        assertFalse(document.isLineAnalysed(50000));
+        assertFalse(tasks.isEmpty());
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        assertTrue(document.isLineAnalysed(100001));
+        assertEquals(Range.of(0, 6), document.getCommentsBounds(100001).get(0));
+    }
+
+    @Test
+    public void plainTextBracketsFollowEdits() {
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        document.setHighlightingService(new HighlightingService(tasks::add, tasks::add));
+        StringBuilder text = new StringBuilder("f(x)\n");
+        for (int i = 0; i < 300; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new NoneSyntax());
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+        document.moveCaret(0, 0);
+        document.insertText('z');
+        document.insertText('z');
+        document.moveCaret(0, 3);
+
+        IntRangeList bounds = document.getBracketsBounds(0);
+        assertEquals(2, bounds.size());
+        assertEquals(Range.of(3, 4), bounds.get(1));
+        assertEquals(Range.of(5, 6), bounds.get(0));
+    }
+
+    @Test
+    public void loadedPlainTextIsNotLexed() throws NoSuchFieldException, IllegalAccessException {
+        DocumentContent content = new DocumentContent();
+        StringBuilder text = new StringBuilder("f(x)\n");
+        for (int i = 0; i < 1000; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        content.append(text.toString().toCharArray(), 0, text.length());
+        document.load(content, new NoneSyntax());
+        assertEquals(0, materializedLineInfos());
+
+        document.moveCaret(0, 0);
+        document.insertText('z');
+        document.insertText('z');
+        document.moveCaret(0, 3);
+        IntRangeList bounds = document.getBracketsBounds(0);
+        assertEquals(2, bounds.size());
+        assertEquals(Range.of(5, 6), bounds.get(0));
+        assertTrue(materializedLineInfos() < 10);
+    }
+
+    @Test
+    public void loadedContentKnowsLineLengths() {
+        DocumentContent content = new DocumentContent();
+        char[] text = "ab\nlongest line\n\nxyz".toCharArray();
+        for (int i = 0; i < text.length; i += 5) {
+            content.append(text, i, Math.min(5, text.length - i));
+        }
+        document.load(content);
+        assertEquals(12, document.getMaxLength());
+
+        document.moveCaret(1, 12);
+        for (int i = 0; i < 8; ++i) {
+            document.backspaceChar();
+        }
+        assertEquals(4, document.getMaxLength());
+    }
+
+    private int materializedLineInfos() throws NoSuchFieldException, IllegalAccessException {
+        Field field = SimpleDocument.class.getDeclaredField("lineInfos");
+        field.setAccessible(true);
+        int[] count = new int[1];
+        ((LineTree) field.get(document)).forEach(info -> count[0] += 1);
+        return count[0];
+    }
+
     private String getSelectedText() {
         try {
-            Method method = document.getClass().getDeclaredMethod("getSelectedText");
+            Method method = document.getClass().getDeclaredMethod("getSelectedSnapshot");
             method.setAccessible(true);
-            return (String) method.invoke(document);
+            return method.invoke(document).toString();
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             e.printStackTrace();
         }
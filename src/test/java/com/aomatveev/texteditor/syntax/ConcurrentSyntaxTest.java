@@ -0,0 +1,92 @@
+package com.aomatveev.texteditor.syntax;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.primitives.IntRangeList;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+public class ConcurrentSyntaxTest extends Assert {
+
+    private static final SyntaxLexer SCRIPT = new SyntaxLexer(new SyntaxDefinition()
+            .identifiers(true)
+            .keywords("echo", "fi")
+            .lineComment("#")
+            .blockComment("<#", "#>")
+            .quotes("'"));
+
+    @Test
+    public void documentsWithDifferentSyntaxesDoNotInterfere() throws Exception {
+        List<Supplier<AbstractSyntax>> syntaxes = new ArrayList<>();
+        syntaxes.add(JavaSyntax::new);
+        syntaxes.add(JavascriptSyntax::new);
+        syntaxes.add(() -> new AbstractSyntax(SCRIPT) {
+        });
+        String text = generateText();
+        List<List<String>> expected = new ArrayList<>();
+        for (Supplier<AbstractSyntax> syntax : syntaxes) {
+            expected.add(analyse(syntax.get(), text));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < 60; ++i) {
+            Supplier<AbstractSyntax> syntax = syntaxes.get(i % syntaxes.size());
+            results.add(executor.submit(() -> analyse(syntax.get(), text)));
+        }
+        for (int i = 0; i < results.size(); ++i) {
+            assertEquals(expected.get(i % syntaxes.size()), results.get(i).get());
+        }
+        executor.shutdown();
+        assertNotEquals(expected.get(0), expected.get(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void syntaxIsBoundToOneDocument() {
+        AbstractSyntax syntax = new JavaSyntax();
+        new SimpleDocument(new MockSimpleTextComponent()).setSyntax(syntax);
+        new SimpleDocument(new MockSimpleTextComponent()).setSyntax(syntax);
+    }
+
+    private static List<String> analyse(AbstractSyntax syntax, String text) {
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, text);
+        document.setSyntax(syntax);
+        document.moveCaret(100, 0);
+        document.insertText('/');
+        document.insertText('*');
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < document.linesSize(); i += 7) {
+            StringBuilder line = new StringBuilder();
+            IntRangeList comments = document.getCommentsBounds(i);
+            for (int j = 0; j < comments.size(); ++j) {
+                line.append(comments.start(j)).append('-').append(comments.end(j)).append(' ');
+            }
+            IntRangeList keywords = document.getKeywordsBounds(i);
+            for (int j = 0; j < keywords.size(); ++j) {
+                line.append('k').append(keywords.start(j)).append(' ');
+            }
+            result.add(line.toString());
+        }
+        return result;
+    }
+
+    private static String generateText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; ++i) {
+            text.append(i % 5 == 0 ? "echo 'a' # int x /* b */\n" : "int y; <# fi #> 'c' // d\n");
+            if (i % 400 == 0) {
+                text.append("*/ #>\n");
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.aomatveev.texteditor.syntax;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.primitives.Range;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+public class HighlightingServiceTest extends Assert {
+
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    private SimpleDocument document;
+
+    @Before
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            text.append("int a").append(i).append(";\n");
+        }
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        document.setHighlightingService(new HighlightingService(tasks::add, tasks::add));
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new JavaSyntax());
+        runTasks();
+    }
+
+    @Test
+    public void editsReturnBeforeWholeDocumentIsLexed() {
+        document.moveCaret(0, 0);
+        document.insertText('/');
+        document.insertText('*');
+
+        assertFalse(document.isLineAnalysed(19999));
+        assertFalse(tasks.isEmpty());
+        runTasks();
+        assertTrue(document.isLineAnalysed(19999));
+        assertEquals(Range.of(0, 11), document.getCommentsBounds(19999).get(0));
+    }
+
+    @Test
+    public void staleResultsAreRecomputed() {
+        document.moveCaret(0, 0);
+        document.insertText('/');
+        document.insertText('*');
+        tasks.poll().run();
+
+        document.moveCaret(10000, 0);
+        document.insertText('*');
+        document.insertText('/');
+        document.insertNewLine();
+        runTasks();
+
+        assertTrue(document.isLineAnalysed(20000));
+        assertEquals(Range.of(0, 2), document.getCommentsBounds(10000).get(0));
+        assertEquals(0, document.getCommentsBounds(10001).size());
+        assertEquals(0, document.getCommentsBounds(20000).size());
+        assertEquals(Range.of(0, 10), document.getCommentsBounds(9999).get(0));
+    }
+
+    @Test
+    public void validPrefixOfStaleBatchIsApplied() {
+        document.moveCaret(0, 0);
+        document.insertText('/');
+        document.insertText('*');
+
+        document.moveCaret(1000, 0);
+        document.insertText('x');
+        tasks.poll().run();
+        tasks.poll().run();
+
+        assertTrue(document.isLineAnalysed(999));
+        assertFalse(document.isLineAnalysed(1000));
+        assertEquals(Range.of(0, 9), document.getCommentsBounds(999).get(0));
+        runTasks();
+        assertTrue(document.isLineAnalysed(19999));
+        assertEquals(Range.of(0, 11), document.getCommentsBounds(1000).get(0));
+    }
+
+    @Test
+    public void failuresArePublished() {
+        List<Throwable> failures = new ArrayList<>();
+        new HighlightingService(tasks::add, tasks::add).submit(() -> {
+            throw new IllegalStateException("lexer failed");
+        }, result -> fail(), failures::add);
+        runTasks();
+
+        assertEquals(1, failures.size());
+        assertEquals("lexer failed", failures.get(0).getMessage());
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+}
@@ -2,13 +2,13 @@ package com.aomatveev.texteditor.syntax;
 
 import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
 import com.aomatveev.texteditor.model.SimpleDocument;
-import com.aomatveev.texteditor.primitives.Pair;
+import com.aomatveev.texteditor.primitives.IntRangeList;
+import com.aomatveev.texteditor.primitives.Range;
 import com.aomatveev.texteditor.utilities.TestUtilities;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.List;
 
 public class JavaSyntaxTest extends Assert {
     private SimpleDocument document;
@@ -22,60 +22,73 @@ public class JavaSyntaxTest extends Assert {
 
     @Test
     public void identifiers() {
-        List<Pair<Integer, Integer>> bounds = document.getIdentifiersBounds(0);
+        IntRangeList bounds = document.getIdentifiersBounds(0);
         assertEquals(3, bounds.size());
-        assertTrue(new Pair<>(0, 6).equals(bounds.get(0)));
-        assertTrue(new Pair<>(7, 12).equals(bounds.get(1)));
-        assertTrue(new Pair<>(13, 17).equals(bounds.get(2)));
+        assertEquals(Range.of(0, 6), bounds.get(0));
+        assertEquals(Range.of(7, 12), bounds.get(1));
+        assertEquals(Range.of(13, 17), bounds.get(2));
     }
 
     @Test
     public void keywords() {
-        List<Pair<Integer, Integer>> bounds = document.getKeywordsBounds(0);
+        IntRangeList bounds = document.getKeywordsBounds(0);
         assertEquals(2, bounds.size());
-        assertTrue(new Pair<>(0, 6).equals(bounds.get(0)));
-        assertTrue(new Pair<>(7, 12).equals(bounds.get(1)));
+        assertEquals(Range.of(0, 6), bounds.get(0));
+        assertEquals(Range.of(7, 12), bounds.get(1));
+    }
+
+    @Test
+    public void keywordsAfterPunctuation() {
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        document.setSyntax(new JavaSyntax());
+        TestUtilities.initDocument(document, "f(int a){\treturn (long) a;} integer");
+        IntRangeList bounds = document.getKeywordsBounds(0);
+
+        assertEquals(3, bounds.size());
+        assertEquals(Range.of(2, 5), bounds.get(0));
+        assertEquals(Range.of(10, 16), bounds.get(1));
+        assertEquals(Range.of(18, 22), bounds.get(2));
     }
 
     @Test
     public void literalsTest() {
-        List<Pair<Integer, Integer>> bounds = document.getLiteralsBounds(2);
+        IntRangeList bounds = document.getLiteralsBounds(2);
         assertEquals(1, bounds.size());
-        assertTrue(new Pair<>(31, 38).equals(bounds.get(0)));
+        assertEquals(Range.of(31, 38), bounds.get(0));
     }
 
     @Test
     public void lineComments() {
-        List<Pair<Integer, Integer>> bounds = document.getCommentsBounds(1);
+        IntRangeList bounds = document.getCommentsBounds(1);
         assertEquals(1, bounds.size());
-        assertTrue(new Pair<>(0, 46).equals(bounds.get(0)));
+        assertEquals(Range.of(0, 46), bounds.get(0));
     }
 
     @Test
     public void textComments() {
-        List<Pair<Integer, Integer>> bounds = document.getCommentsBounds(2);
+        IntRangeList bounds = document.getCommentsBounds(2);
         assertEquals(1, bounds.size());
-        assertTrue(new Pair<>(10, 26).equals(bounds.get(0)));
+        assertEquals(Range.of(10, 26), bounds.get(0));
     }
 
     @Test
     public void oneLineMatchingOpenBracket() {
         document.moveCaret(2, 30);
-        List<Pair<Integer, Integer>> bounds = document.getBracketsBounds(2);
+        IntRangeList bounds = document.getBracketsBounds(2);
 
         assertEquals(2, bounds.size());
-        assertTrue(new Pair<>(30, 31).equals(bounds.get(1)));
-        assertTrue(new Pair<>(38, 39).equals(bounds.get(0)));
+        assertEquals(Range.of(30, 31), bounds.get(1));
+        assertEquals(Range.of(38, 39), bounds.get(0));
     }
 
     @Test
     public void oneLineMatchingCloseBracket() {
         document.moveCaret(2, 38);
-        List<Pair<Integer, Integer>> bounds = document.getBracketsBounds(2);
+        IntRangeList bounds = document.getBracketsBounds(2);
 
         assertEquals(2, bounds.size());
-        assertTrue(new Pair<>(30, 31).equals(bounds.get(0)));
-        assertTrue(new Pair<>(38, 39).equals(bounds.get(1)));
+        assertEquals(Range.of(30, 31), bounds.get(0));
+        assertEquals(Range.of(38, 39), bounds.get(1));
     }
 
     @Test
@@ -88,8 +101,8 @@ public class JavaSyntaxTest extends Assert {
         assertEquals(1, document.getBracketsBounds(3).size());
         assertEquals(0, document.getBracketsBounds(4).size());
 
-        assertTrue(new Pair<>(18, 19).equals(document.getBracketsBounds(0).get(0)));
-        assertTrue(new Pair<>(4, 5).equals(document.getBracketsBounds(3).get(0)));
+        assertEquals(Range.of(18, 19), document.getBracketsBounds(0).get(0));
+        assertEquals(Range.of(4, 5), document.getBracketsBounds(3).get(0));
     }
 
     @Test
@@ -102,8 +115,71 @@ public class JavaSyntaxTest extends Assert {
         assertEquals(1, document.getBracketsBounds(3).size());
         assertEquals(0, document.getBracketsBounds(4).size());
 
-        assertTrue(new Pair<>(18, 19).equals(document.getBracketsBounds(0).get(0)));
-        assertTrue(new Pair<>(4, 5).equals(document.getBracketsBounds(3).get(0)));
+        assertEquals(Range.of(18, 19), document.getBracketsBounds(0).get(0));
+        assertEquals(Range.of(4, 5), document.getBracketsBounds(3).get(0));
+    }
+
+    @Test
+    public void commentsAfterBatchedInsert() {
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        document.setSyntax(new JavaSyntax());
+        TestUtilities.initDocument(document, "int a; /* open\nstill comment\nclose */ int b;");
+
+        assertEquals(Range.of(7, 14), document.getCommentsBounds(0).get(0));
+        assertEquals(Range.of(0, 13), document.getCommentsBounds(1).get(0));
+        assertEquals(Range.of(0, 8), document.getCommentsBounds(2).get(0));
+    }
+
+    @Test
+    public void openCommentOnLargeDocument() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            text.append("int a").append(i).append(";\n");
+        }
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new JavaSyntax());
+
+        document.moveCaret(0, 0);
+        document.insertText('/');
+        document.insertText('*');
+        assertEquals(Range.of(0, 11), document.getCommentsBounds(99999).get(0));
+
+        document.backspaceChar();
+        assertEquals(0, document.getCommentsBounds(99999).size());
+    }
+
+    @Test
+    public void commentMarkersInsideStrings() {
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        document.setSyntax(new JavaSyntax());
+        TestUtilities.initDocument(document, "s = \"/* // \\\"\"; c = '\"';\nint b; // note");
+
+        assertEquals(0, document.getCommentsBounds(0).size());
+        assertEquals(Range.of(7, 14), document.getCommentsBounds(1).get(0));
+    }
+
+    @Test
+    public void bracketsOnLargeDocument() {
+        StringBuilder text = new StringBuilder("void f() {\n");
+        for (int i = 0; i < 50000; ++i) {
+            text.append("    g(\"}\", '{'); // }\n    /* { */ h[i];\n");
+        }
+        text.append("}");
+        document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, text.toString());
+        document.setSyntax(new JavaSyntax());
+
+        document.moveCaret(0, 9);
+        assertEquals(Range.of(0, 1), document.getBracketsBounds(100001).get(0));
+
+        document.moveCaret(100001, 0);
+        assertEquals(Range.of(9, 10), document.getBracketsBounds(0).get(0));
+
+        document.moveCaret(100000, 0);
+        document.insertText('{');
+        document.moveCaret(0, 9);
+        assertEquals(0, document.getBracketsBounds(100001).size());
     }
 
     private String generateText() {
@@ -0,0 +1,68 @@
+package com.aomatveev.texteditor.syntax;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import com.aomatveev.texteditor.utilities.TestUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelLexerTest extends Assert {
+
+    private final SyntaxLexer lexer = new SyntaxLexer(new SyntaxDefinition()
+            .identifiers(true)
+            .lineComment("//")
+            .blockComment("/*", "*/")
+            .quotes("\"")
+            .escape('\\'));
+
+    @Test
+    public void matchesSequentialLexing() {
+        String[] pieces = {"int a;", "/* open", "close */ b(c);", "// line /*", "s = \"x\\", "y\";", "{ }"};
+        Random random = new Random(5);
+        String[] lines = new String[20000];
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = pieces[random.nextInt(pieces.length)];
+        }
+        for (int i = 3000; i < 9000; ++i) {
+            lines[i] = i == 3000 ? "/*" : "comment";
+        }
+        assertLexedLikeSequential(lines, new ForkJoinPool(4));
+        assertLexedLikeSequential(lines, new ForkJoinPool(1));
+    }
+
+    @Test
+    public void lexesSnapshotsInChunks() {
+        String[] lines = new String[70000];
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = i == 65000 ? "a /* b" : i == 66000 ? "c */ d" : "{ e }";
+        }
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, String.join("\n", lines));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        LexedLines result = ParallelLexer.lex(lexer, document.getSnapshot(), lines.length,
+                SyntaxLexer.DEFAULT_STATE, pool);
+        assertLexedLikeSequential(lines, result);
+        pool.shutdown();
+    }
+
+    private void assertLexedLikeSequential(String[] lines, ForkJoinPool pool) {
+        assertLexedLikeSequential(lines, ParallelLexer.lex(lexer, lines, SyntaxLexer.DEFAULT_STATE, pool));
+        pool.shutdown();
+    }
+
+    private void assertLexedLikeSequential(String[] lines, LexedLines result) {
+        assertEquals(lines.length, result.size());
+        LineTokens tokens = new LineTokens();
+        int state = SyntaxLexer.DEFAULT_STATE;
+        for (int i = 0; i < lines.length; ++i) {
+            state = lexer.lex(lines[i], state, tokens);
+            assertEquals(state, result.getState(i));
+            assertArrayEquals(tokens.getComments(), result.getComments(i));
+            assertArrayEquals(tokens.getBrackets(), result.getBrackets(i));
+            assertEquals(tokens.getLineComment(), result.getLineComment(i));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.aomatveev.texteditor.syntax;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SyntaxLexerTest extends Assert {
+
+    private final LineTokens tokens = new LineTokens();
+
+    @Test
+    public void dataOnlyLanguage() {
+        SyntaxLexer lexer = new SyntaxLexer(new SyntaxDefinition()
+                .identifiers(true)
+                .keywords("select", "from")
+                .lineComment("--")
+                .blockComment("{-", "-}")
+                .quotes("'"));
+
+        assertEquals(SyntaxLexer.BLOCK_COMMENT_STATE, lexer.lex("select a-b from t {- open", 0, tokens));
+        assertTokens("1:0-6 0:7-8 0:9-10 1:11-15 0:16-17 3:18-25");
+
+        assertEquals(SyntaxLexer.DEFAULT_STATE, lexer.lex("x -} 'it''s' -- rest", SyntaxLexer.BLOCK_COMMENT_STATE, tokens));
+        assertTokens("3:0-4 2:5-9 2:9-12 3:13-20");
+        assertEquals(13, tokens.getLineComment());
+    }
+
+    @Test
+    public void overlappingDelimiters() {
+        SyntaxLexer lexer = new SyntaxLexer(new SyntaxDefinition()
+                .identifiers(true)
+                .lineComment("//")
+                .blockComment("/*", "*/")
+                .quotes("\"")
+                .escape('\\'));
+
+        assertEquals(SyntaxLexer.DEFAULT_STATE, lexer.lex("a/b/**/c/*/ x */", 0, tokens));
+        assertTokens("0:0-1 0:2-3 3:3-7 0:7-8 3:8-16");
+
+        assertEquals(2, lexer.lex("s(\"a\\\"b\\", 0, tokens));
+        assertTokens("0:0-1 2:2-8");
+        assertEquals(1, tokens.getBrackets().length);
+        assertEquals(SyntaxLexer.DEFAULT_STATE, lexer.lex("c\")", 2, tokens));
+        assertTokens("2:0-2");
+        assertEquals(1, tokens.getBrackets().length);
+    }
+
+    @Test
+    public void slicesFromCheckpointsMatchWholeLine() {
+        SyntaxLexer lexer = new SyntaxLexer(new SyntaxDefinition()
+                .identifiers(true)
+                .keywords("int", "return")
+                .lineComment("#")
+                .blockComment("/*", "*/")
+                .quotes("\"'")
+                .escape('\\'));
+        String[] parts = {"int", " ", "abc1", "/*", "*/", "\"", "'", "\\", "(", "return", ";", "/", "*"};
+        Random random = new Random(5);
+        StringBuilder line = new StringBuilder();
+        while (line.length() < 20000) {
+            line.append(parts[random.nextInt(parts.length)]);
+        }
+        lexer.lex(line, SyntaxLexer.BLOCK_COMMENT_STATE, tokens);
+        String whole = tokensString(tokens, 0, line.length());
+        int[] checkpoints = lexer.checkpoints(line, SyntaxLexer.BLOCK_COMMENT_STATE, 256);
+        assertTrue(checkpoints.length > 40);
+
+        for (int c = 0; c < checkpoints.length; c += 2) {
+            int from = checkpoints[c];
+            int to = Math.min(from + 1000, line.length());
+            lexer.lex(line, from, to, checkpoints[c + 1], tokens);
+            String slice = tokensString(tokens, from + 1, to - 100);
+            assertTrue(slice, whole.contains(slice));
+        }
+    }
+
+    private static String tokensString(LineTokens tokens, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); ++i) {
+            if ((tokens.start(i) >= from) && (tokens.end(i) <= to)) {
+                sb.append(tokens.kind(i)).append(':').append(tokens.start(i)).append('-').append(tokens.end(i))
+                        .append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void assertTokens(String expected) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); ++i) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(tokens.kind(i)).append(':').append(tokens.start(i)).append('-').append(tokens.end(i));
+        }
+        assertEquals(expected, sb.toString());
+    }
+}
@@ -0,0 +1,43 @@
+package com.aomatveev.texteditor.utilities;
+
+import com.aomatveev.texteditor.model.LineIndex;
+import com.aomatveev.texteditor.model.MappedTextStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class IndexerTest extends Assert {
+
+    @Test
+    public void cancelledIndexerClosesCreatedStore() throws Exception {
+        File file = File.createTempFile("indexer", ".txt");
+        Files.write(file.toPath(), "first\nsecond".getBytes(StandardCharsets.UTF_8));
+        boolean[] closed = new boolean[1];
+        Indexer<MappedTextStore> indexer = new Indexer<MappedTextStore>(file) {
+            @Override
+            protected MappedTextStore createStore(LineIndex index) {
+                cancel(false);
+                return new MappedTextStore(index, index.getCharset()) {
+                    @Override
+                    public void close() {
+                        closed[0] = true;
+                        super.close();
+                    }
+                };
+            }
+
+            @Override
+            protected void show(MappedTextStore store) {
+                fail();
+            }
+        };
+        indexer.run();
+
+        assertTrue(indexer.isCancelled());
+        assertTrue(closed[0]);
+        assertTrue(file.delete());
+    }
+}
@@ -0,0 +1,67 @@
+package com.aomatveev.texteditor.utilities;
+
+import com.aomatveev.texteditor.gui.MockSimpleTextComponent;
+import com.aomatveev.texteditor.model.SimpleDocument;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+public class SaverTest extends Assert {
+
+    @Test
+    public void replacesFileWithSnapshot() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            text.append("line ").append(i).append( " \u00e9\u4e2d\ud83d\ude00\n");
+        }
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, text.toString());
+        Path directory = Files.createTempDirectory("saver");
+        File file = directory.resolve("out.txt").toFile();
+        Files.write(file.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+
+        Saver saver = new Saver(file, document.getSnapshot(), StandardCharsets.UTF_8, true);
+        document.insertText('x');
+        saver.doInBackground();
+
+        assertEquals(text.toString(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(100, saver.getProgress());
+        assertEquals(1, directory.toFile().list().length);
+        delete(directory);
+    }
+
+    @Test
+    public void keepsPermissionsOfReplacedFile() throws Exception {
+        Path directory = Files.createTempDirectory("saver");
+        Path path = directory.resolve("script.sh");
+        Files.write(path, "old".getBytes(StandardCharsets.UTF_8));
+        Assume.assumeTrue(Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.setPosixFilePermissions(path, permissions);
+        SimpleDocument document = new SimpleDocument(new MockSimpleTextComponent());
+        TestUtilities.initDocument(document, "echo new");
+
+        new Saver(path.toFile(), document.getSnapshot(), StandardCharsets.UTF_8, false).doInBackground();
+
+        assertEquals("echo new", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        assertEquals(permissions, Files.getPosixFilePermissions(path));
+        delete(directory);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        for (File file : directory.toFile().listFiles()) {
+            assertTrue(file.delete());
+        }
+        Files.delete(directory);
+    }
+}